@@ -36,6 +36,32 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The maximum size (in bytes) of a set completion table that is kept on the heap
+     */
+    public final long completionTableMaxHeapBytes;
+
+    /**
+     * The directory of memory mapped set completion tables for larger decks (empty, the default, to compute completions
+     * on the fly)
+     */
+    public final String completionTableDirectory;
+
+    /**
+     * The number of threads that search for sets in large decks (0 for the number of processors, 1 for no threads)
+     */
+    public final int findSetsParallelism;
+
+    /**
+     * The minimum number of cards for which the search for sets is split between threads
+     */
+    public final int findSetsParallelThreshold;
+
+    /**
+     * The number of games to simulate headless at full speed (0 to play a single game with a user interface)
+     */
+    public final int simulationGames;
+
     /**
      * The number of human players in the game.
      */
@@ -51,6 +77,26 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * Whether computer players generate their key presses on the player thread instead of an additional AI thread
+     */
+    public final boolean inlineComputerPlayers;
+
+    /**
+     * How players and AI threads wait for key presses and for room in the press queue
+     */
+    public final WaitStrategy pressWaitStrategy;
+
+    /**
+     * Whether the dealer, player and AI threads are virtual threads (requires Java 21, otherwise ignored)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * The number of simulated games that are played at the same time
+     */
+    public final int simulationConcurrentGames;
+
     /**
      * Whether to print out hints to the console or not
      */
@@ -155,7 +201,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -197,11 +243,21 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        completionTableMaxHeapBytes = Long.parseLong(properties.getProperty("CompletionTableMaxHeapKB", "4096")) * 1024L;
+        completionTableDirectory = properties.getProperty("CompletionTableDirectory", "").trim();
+        int parallelism = Integer.parseInt(properties.getProperty("FindSetsParallelism", "0"));
+        findSetsParallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        findSetsParallelThreshold = Integer.parseInt(properties.getProperty("FindSetsParallelThreshold", "729"));
 
         // gameplay settings
+        simulationGames = Integer.parseInt(properties.getProperty("SimulationGames", "0"));
+        simulationConcurrentGames = Integer.parseInt(properties.getProperty("SimulationConcurrentGames", "1"));
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        pressWaitStrategy = WaitStrategy.valueOf(properties.getProperty("PressWaitStrategy", "BLOCK").trim().toUpperCase());
+        virtualThreads = Boolean.parseBoolean(properties.getProperty("VirtualThreads", "False"));
+        inlineComputerPlayers = Boolean.parseBoolean(properties.getProperty("InlineComputerPlayers", "False"));
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
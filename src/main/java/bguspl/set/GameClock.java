@@ -0,0 +1,381 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The source of time of a game: turn timeouts, freezes and table delays are all measured and waited for through it.
+ */
+public interface GameClock {
+
+    /**
+     * @return - the current time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Waits for some time.
+     *
+     * @param millis - the time to wait, in milliseconds.
+     * @throws InterruptedException - if the thread is interrupted.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Parks the thread until a deadline, unless it is unparked first (by unpark of this clock) or interrupted. Like
+     * any park, it may also return spuriously, so callers should check their condition again.
+     *
+     * @param blocker  - the object the thread is waiting on.
+     * @param deadline - the time to wake up at (in the time of this clock), Long.MAX_VALUE to wait for an unpark.
+     */
+    void parkUntil(Object blocker, long deadline);
+
+    /**
+     * Ends the current or the next parkUntil of a thread (see LockSupport.unpark).
+     *
+     * @param thread - the thread to unpark (ignored if null).
+     */
+    void unpark(Thread thread);
+
+    /**
+     * Runs a task of the game on an executor.
+     *
+     * @param executor - the executor to run the task on.
+     * @param task     - the task.
+     */
+    void execute(Executor executor, Runnable task);
+
+    /**
+     * Runs a task of the game on an executor after some time.
+     *
+     * @param executor - the executor to run the task on.
+     * @param task     - the task.
+     * @param millis   - the time to wait before the task is run, in milliseconds.
+     */
+    void schedule(Executor executor, Runnable task, long millis);
+
+    /**
+     * Marks the current thread as a thread of the game, until unregister is called.
+     */
+    default void register() {
+    }
+
+    /**
+     * Marks the current thread as no longer a thread of the game.
+     */
+    default void unregister() {
+    }
+
+    /**
+     * The real time.
+     */
+    class Wall implements GameClock {
+
+        /**
+         * The thread that runs the scheduled tasks of all the wall clocks, started on the first schedule.
+         */
+        private static class Timers {
+            static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+
+        @Override
+        public void parkUntil(Object blocker, long deadline) {
+            if (deadline == Long.MAX_VALUE) LockSupport.park(blocker);
+            else LockSupport.parkUntil(blocker, deadline);
+        }
+
+        @Override
+        public void unpark(Thread thread) {
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void execute(Executor executor, Runnable task) {
+            executor.execute(task);
+        }
+
+        @Override
+        public void schedule(Executor executor, Runnable task, long millis) {
+            Timers.SCHEDULER.schedule(() -> executor.execute(task), millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A simulated time that only moves when the game has nothing else to do. The clock keeps the pending deadlines
+     * (of the threads waiting in sleep or parkUntil, and of the scheduled tasks) in a priority queue, and counts the
+     * registered threads that are not waiting and the tasks that are queued or running. Only when that count drops to
+     * zero does the time jump to the earliest pending deadline, and exactly the waits and tasks due by then are woken
+     * and run. So a turn of a minute or a whole game passes as fast as the game can run, and every wait ends in the
+     * order of its deadline, no matter how the threads are scheduled.
+     * <p>
+     * A thread of the game must do all its waiting through the clock while registered: a registered thread that
+     * blocks in any other way holds the time still. A thread that is not registered never holds the time, but its
+     * waits still end in order of their deadlines.
+     */
+    class Virtual implements GameClock {
+
+        /**
+         * A pending deadline: of a waiting thread, or of a scheduled task.
+         */
+        private static class Timer implements Comparable<Timer> {
+
+            final long deadline;
+            final long sequence;
+            final Thread thread;
+            final boolean registered;
+            final Runnable task;
+            final Executor executor;
+            volatile boolean fired;
+
+            Timer(long deadline, long sequence, Thread thread, boolean registered, Runnable task, Executor executor) {
+                this.deadline = deadline;
+                this.sequence = sequence;
+                this.thread = thread;
+                this.registered = registered;
+                this.task = task;
+                this.executor = executor;
+            }
+
+            @Override
+            public int compareTo(Timer other) {
+                if (deadline != other.deadline) return Long.compare(deadline, other.deadline);
+                return Long.compare(sequence, other.sequence);
+            }
+        }
+
+        /**
+         * Guards all the fields below, except now (which is only written under it).
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+        private final Set<Thread> registered = new HashSet<>();
+        private final Map<Thread, Timer> parked = new HashMap<>();
+        private final Set<Thread> permits = new HashSet<>();
+        private long sequence;
+
+        /**
+         * The registered threads that are not waiting, plus the tasks that are queued or running.
+         */
+        private int running;
+
+        private volatile long now;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            if (Thread.interrupted() || !await(now + millis, false)) {
+                Thread.interrupted();
+                throw new InterruptedException();
+            }
+        }
+
+        @Override
+        public void parkUntil(Object blocker, long deadline) {
+            await(deadline, true);
+        }
+
+        @Override
+        public void unpark(Thread thread) {
+            if (thread == null) return;
+            List<Timer> due = new ArrayList<>();
+            lock.lock();
+            try {
+                Timer timer = parked.get(thread);
+                if (timer == null) permits.add(thread);
+                else {
+                    timers.remove(timer);
+                    fire(timer, due);
+                }
+            } finally {
+                lock.unlock();
+            }
+            run(due);
+        }
+
+        @Override
+        public void execute(Executor executor, Runnable task) {
+            lock.lock();
+            try {
+                running++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                executor.execute(counted(task));
+            } catch (RuntimeException e) {
+                finished();
+                throw e;
+            }
+        }
+
+        @Override
+        public void schedule(Executor executor, Runnable task, long millis) {
+            List<Timer> due = new ArrayList<>();
+            lock.lock();
+            try {
+                timers.add(new Timer(now + Math.max(millis, 0), sequence++, null, false, task, executor));
+                advance(due);
+            } finally {
+                lock.unlock();
+            }
+            run(due);
+        }
+
+        @Override
+        public void register() {
+            lock.lock();
+            try {
+                if (registered.add(Thread.currentThread())) running++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void unregister() {
+            List<Timer> due = new ArrayList<>();
+            lock.lock();
+            try {
+                if (registered.remove(Thread.currentThread())) running--;
+                permits.remove(Thread.currentThread());
+                advance(due);
+            } finally {
+                lock.unlock();
+            }
+            run(due);
+        }
+
+        /**
+         * Waits until a deadline (Long.MAX_VALUE for no deadline), an unpark (if unparkable) or an interrupt.
+         *
+         * @return - false iff the wait was ended by an interrupt (which is left set).
+         */
+        private boolean await(long deadline, boolean unparkable) {
+            Thread thread = Thread.currentThread();
+            List<Timer> due = new ArrayList<>();
+            Timer timer;
+            lock.lock();
+            try {
+                if (unparkable && permits.remove(thread) || deadline <= now) return true;
+                timer = new Timer(deadline, sequence++, thread, registered.contains(thread), null, null);
+                if (deadline != Long.MAX_VALUE) timers.add(timer);
+                if (unparkable) parked.put(thread, timer);
+                if (timer.registered) running--;
+                advance(due);
+            } finally {
+                lock.unlock();
+            }
+            run(due);
+
+            while (!timer.fired) {
+                if (thread.isInterrupted()) {
+                    lock.lock();
+                    try {
+                        if (timer.fired) return true;
+                        timers.remove(timer);
+                        parked.remove(thread, timer);
+                        if (timer.registered) running++;
+                        return false;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                LockSupport.park(this);
+            }
+            return true;
+        }
+
+        /**
+         * Moves the time to the earliest deadline and fires the timers due by then, as long as nothing runs.
+         *
+         * @param due - collects the tasks to run once the lock is released.
+         */
+        private void advance(List<Timer> due) {
+            while (running == 0 && !timers.isEmpty()) {
+                now = Math.max(now, timers.peek().deadline);
+                while (!timers.isEmpty() && timers.peek().deadline <= now)
+                    fire(timers.poll(), due);
+            }
+        }
+
+        /**
+         * Ends the wait of a timer's thread, or adds its task to the tasks due (the timer is no longer queued).
+         */
+        private void fire(Timer timer, List<Timer> due) {
+            timer.fired = true;
+            if (timer.task != null) {
+                running++;
+                due.add(timer);
+                return;
+            }
+            parked.remove(timer.thread, timer);
+            if (timer.registered) running++;
+            LockSupport.unpark(timer.thread);
+        }
+
+        /**
+         * Runs the tasks that are due (they are already counted as running).
+         */
+        private void run(List<Timer> due) {
+            for (Timer timer : due) {
+                try {
+                    timer.executor.execute(counted(timer.task));
+                } catch (RuntimeException e) {
+                    finished();
+                    throw e;
+                }
+            }
+        }
+
+        private Runnable counted(Runnable task) {
+            return () -> {
+                try {
+                    task.run();
+                } finally {
+                    finished();
+                }
+            };
+        }
+
+        private void finished() {
+            List<Timer> due = new ArrayList<>();
+            lock.lock();
+            try {
+                running--;
+                advance(due);
+            } finally {
+                lock.unlock();
+            }
+            run(due);
+        }
+    }
+}
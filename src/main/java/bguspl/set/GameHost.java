@@ -0,0 +1,166 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent games between computer players in one JVM. Every game has its own Env, Table, Dealer and
+ * players, and they only share the (stateless) Util and the threads. The dealers run on a bounded pool of threads, so
+ * at most concurrentGames games are played at the same time while the rest wait their turn. The players of all the
+ * games, and the delivery of their table events, run as tasks on a second pool with a thread per processor, so the
+ * threads of the host do not grow with the number of players.
+ */
+public class GameHost {
+
+    /**
+     * The outcome and measurements of a single game.
+     */
+    public static class GameResult {
+
+        public final int game;
+        public final long nanos;
+        public final int sets;
+        public final int penalties;
+        public final long claims;
+        public final long meanClaimLatencyNanos;
+
+        private GameResult(int game, long nanos, int sets, int penalties, long claims, long meanClaimLatencyNanos) {
+            this.game = game;
+            this.nanos = nanos;
+            this.sets = sets;
+            this.penalties = penalties;
+            this.claims = claims;
+            this.meanClaimLatencyNanos = meanClaimLatencyNanos;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+    private final Supplier<GameClock> clocks;
+    private final ThreadFactory threadFactory;
+
+    /**
+     * The most platform threads and the most heap memory in use in the host (by all the games played at the same
+     * time) while games were played.
+     */
+    private int peakThreads;
+    private long peakHeapBytes;
+
+    /**
+     * @param logger        - the logger (shared by all the games).
+     * @param config        - the game configuration (human players are ignored).
+     * @param util          - the util object (shared by all the games).
+     * @param clocks        - creates the clock of every game.
+     * @param threadFactory - creates all the threads of the host and its games.
+     */
+    public GameHost(Logger logger, Config config, Util util, Supplier<GameClock> clocks, ThreadFactory threadFactory) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+        this.clocks = clocks;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Plays a number of games, at most concurrentGames of them at the same time.
+     *
+     * @param games           - the number of games to play.
+     * @param concurrentGames - the number of games played at the same time.
+     * @return - the results of the games, in the order they were started.
+     * @throws InterruptedException - if the thread is interrupted while waiting for the games to end.
+     */
+    public List<GameResult> play(int games, int concurrentGames) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        ExecutorService dealers = Executors.newFixedThreadPool(Math.max(concurrentGames, 1), threadFactory);
+        ExecutorService players = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                threadFactory);
+        try {
+            List<Future<GameResult>> futures = new ArrayList<>(games);
+            for (int i = 0; i < games; ++i) {
+                int game = i;
+                futures.add(dealers.submit(() -> playGame(game, players)));
+            }
+            List<GameResult> results = new ArrayList<>(games);
+            for (Future<GameResult> future : futures)
+                results.add(future.get());
+            return results;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            dealers.shutdownNow();
+            players.shutdownNow();
+            peakThreads = Math.max(peakThreads, threads.getPeakThreadCount());
+        }
+    }
+
+    /**
+     * Plays a single game on the current thread (which becomes the dealer thread).
+     *
+     * @param game    - the number of the game.
+     * @param players - runs the players of the game and the delivery of its table events.
+     */
+    private GameResult playGame(int game, Executor players) {
+        long start = System.nanoTime();
+        Env env = new Env(logger, config, new UserInterfaceNull(), util, clocks.get(), threadFactory);
+        Table table = new Table(env, players);
+        Player[] gamePlayers = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, gamePlayers);
+        for (int i = 0; i < gamePlayers.length; i++)
+            gamePlayers[i] = new Player(env, dealer, table, i, false, players);
+
+        ThreadLogger.logStart(logger, "dealer-" + game);
+        env.clock.register();
+        try {
+            dealer.run();
+        } finally {
+            env.clock.unregister();
+        }
+        ThreadLogger.logStop(logger, "dealer-" + game);
+
+        int sets = 0;
+        int penalties = 0;
+        for (Player player : gamePlayers) {
+            sets += player.score();
+            penalties += player.penalties();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        recordHeap(runtime.totalMemory() - runtime.freeMemory());
+        return new GameResult(game, System.nanoTime() - start, sets, penalties,
+                dealer.claimsChecked(), dealer.meanClaimLatencyNanos());
+    }
+
+    private synchronized void recordHeap(long heapBytes) {
+        peakHeapBytes = Math.max(peakHeapBytes, heapBytes);
+    }
+
+    /**
+     * @return - the most platform threads that were alive at the same time in the JVM while games were played.
+     */
+    public int peakThreads() {
+        return peakThreads;
+    }
+
+    /**
+     * @return - the most heap memory (in bytes) that was in use in the host when a game ended. This is a figure of the
+     * whole JVM, shared by all the games that were played at the same time.
+     */
+    public synchronized long peakHeapBytes() {
+        return peakHeapBytes;
+    }
+}
@@ -10,6 +10,7 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Properties;
 import java.util.logging.*;
 
 /**
@@ -20,6 +21,8 @@ public class Main {
     private static Dealer dealer;
     private static Thread mainThread;
 
+    private static final String USAGE = "usage: java bguspl.set.Main [--simulate [games]] (games is a positive number)";
+
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
@@ -33,7 +36,7 @@ public class Main {
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
-     * @param args - unused.
+     * @param args - optional: --simulate [games] to simulate games headless instead (see Config.simulationGames).
      */
     public static void main(String[] args) {
 
@@ -42,7 +45,23 @@ public class Main {
         // create the game environment objects
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
-        Config config = new Config(logger, "config.properties");
+        Properties properties = Config.loadProperties("config.properties", logger);
+        Config config = new Config(logger, properties);
+        int simulationGames = config.simulationGames;
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            simulationGames = args.length > 1 ? parseGames(args[1]) : Math.max(simulationGames, 1);
+            if (simulationGames <= 0) {
+                logger.severe("invalid number of games to simulate: " + args[1]);
+                System.err.println(USAGE);
+                ThreadLogger.logStop(logger, Thread.currentThread().getName());
+                for (Handler h : logger.getHandlers()) h.flush();
+                return;
+            }
+        }
+        if (simulationGames > 0) {
+            simulate(properties, simulationGames);
+            return;
+        }
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
@@ -57,7 +76,7 @@ public class Main {
         }
         ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        Env env = new Env(logger, config, ui, util, new GameClock.Wall(), ThreadFactories.create(config, logger));
 
         // create the game entities
         Table table = new Table(env);
@@ -66,12 +85,18 @@ public class Main {
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
         // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
-        dealerThread.startWithLog();
+        Thread dealerThread = env.threadFactory.newThread(dealer);
+        dealerThread.setName("dealer");
+        ThreadLogger.logStart(logger, dealerThread.getName());
+        dealerThread.start();
 
         try {
             // shutdown stuff
-            dealerThread.joinWithLog();
+            try {
+                dealerThread.join();
+            } finally {
+                ThreadLogger.logStop(logger, dealerThread.getName());
+            }
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
@@ -83,6 +108,37 @@ public class Main {
         }
     }
 
+    /**
+     * @param games - the number of games to simulate, from the command line.
+     * @return - the number of games, or -1 if it is not a number.
+     */
+    private static int parseGames(String games) {
+        try {
+            return Integer.parseInt(games.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Plays games headless at full speed and prints the throughput.
+     *
+     * @param properties - the game configuration.
+     * @param games      - the number of games to play.
+     */
+    private static void simulate(Properties properties, int games) {
+        Simulation simulation = new Simulation(logger, properties);
+        try {
+            simulation.run(games);
+        } catch (InterruptedException ignored) {
+        } finally {
+            logger.severe(simulation.summary());
+            System.out.println(simulation.summary());
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            for (Handler h : logger.getHandlers()) h.flush();
+        }
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
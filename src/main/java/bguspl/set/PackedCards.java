@@ -0,0 +1,182 @@
+package bguspl.set;
+
+/**
+ * A bit packed encoding of the cards of the deck. Each feature of a card is stored one-hot (bit v is set for the value
+ * v) in a field of featureSize + 1 bits, whose top bit is a guard bit that is always clear. As many fields as fit are
+ * packed into every long word, so a card is usually a single word.
+ * <p>
+ * A set of featureSize cards is legal iff, in every field of the OR of its cards, either a single bit is set (all the
+ * cards share the value) or all the featureSize bits are set (all the values differ). Both conditions are checked for
+ * all the fields of a word at once, with carry free word arithmetic.
+ */
+public class PackedCards {
+
+    private final int featureSize;
+    private final int featureCount;
+
+    /**
+     * The number of bits per field, the number of fields per word and the number of long words per card.
+     */
+    private final int fieldWidth;
+    private final int fieldsPerWord;
+    private final int words;
+
+    /**
+     * The packed cards: the words of card c are at c * words ... (c + 1) * words - 1.
+     */
+    private final long[] packed;
+
+    /**
+     * Per word masks: the lowest bit of each field, the featureSize value bits of each field and the guard bit of
+     * each field (only fields that are in use are set).
+     */
+    private final long[] low;
+    private final long[] full;
+    private final long[] guard;
+
+    /**
+     * @param config - the game configuration.
+     * @throws IllegalArgumentException - if the feature size does not fit a one-hot field (see supports).
+     */
+    public PackedCards(Config config) {
+        if (!supports(config))
+            throw new IllegalArgumentException("feature size " + config.featureSize + " is too big to pack");
+
+        featureSize = config.featureSize;
+        featureCount = config.featureCount;
+        fieldWidth = featureSize + 1;
+        fieldsPerWord = Long.SIZE / fieldWidth;
+        words = (config.featureCount + fieldsPerWord - 1) / fieldsPerWord;
+
+        low = new long[words];
+        full = new long[words];
+        guard = new long[words];
+        long fieldValues = -1L >>> (Long.SIZE - featureSize);
+        for (int i = 0; i < config.featureCount; ++i) {
+            int word = i / fieldsPerWord;
+            int shift = i % fieldsPerWord * fieldWidth;
+            low[word] |= 1L << shift;
+            full[word] |= fieldValues << shift;
+            guard[word] |= 1L << (shift + featureSize);
+        }
+
+        packed = new long[config.deckSize * words];
+        for (int card = 0; card < config.deckSize; ++card) {
+            int value = card;
+            for (int i = config.featureCount - 1; i >= 0; --i) { // same feature order as Util.cardToFeatures
+                packed[card * words + i / fieldsPerWord] |= 1L << (i % fieldsPerWord * fieldWidth + value % featureSize);
+                value /= featureSize;
+            }
+        }
+    }
+
+    /**
+     * Checks if the cards of a configuration can be packed (a one-hot field with its guard bit must fit in a word).
+     *
+     * @param config - the game configuration.
+     * @return - true iff the feature size is small enough.
+     */
+    public static boolean supports(Config config) {
+        return config.featureSize >= 1 && config.featureSize < Long.SIZE;
+    }
+
+    /**
+     * @return - the number of long words each card is packed into.
+     */
+    public int words() {
+        return words;
+    }
+
+    /**
+     * Returns a word of a packed card.
+     *
+     * @param card - the card id.
+     * @param word - the index of the word (0 ... words() - 1).
+     * @return - the packed word.
+     */
+    public long word(int card, int word) {
+        return packed[card * words + word];
+    }
+
+    /**
+     * Converts packed words back to a card id.
+     *
+     * @param words  - an array holding the packed words of a card.
+     * @param offset - the index of the first word of the card.
+     * @return - the card id.
+     */
+    public int card(long[] words, int offset) {
+        int card = 0;
+        for (int i = 0; i < featureCount; ++i) {
+            long field = words[offset + i / fieldsPerWord] >>> (i % fieldsPerWord * fieldWidth);
+            card = card * featureSize + Long.numberOfTrailingZeros(field);
+        }
+        return card;
+    }
+
+    /**
+     * Checks if an array of exactly featureSize cards forms a legal set.
+     *
+     * @param cards - the array of cards.
+     * @return - true iff the array forms a legal set.
+     */
+    public boolean isSet(int[] cards) {
+        long illegal = 0;
+        for (int w = 0; w < words; ++w) {
+            long values = 0;
+            for (int card : cards)
+                values |= packed[card * words + w];
+            illegal |= mixed(values, w) & partial(values, w);
+        }
+        return illegal == 0;
+    }
+
+    /**
+     * Returns a word of the only card that completes featureSize - 1 cards (at least two) to a legal set. Every field
+     * where the cards share a value keeps it, and every other field gets the one value none of the cards has.
+     *
+     * @param values - the OR of the words of the cards.
+     * @param common - the AND of the words of the cards.
+     * @param word   - the index of the word.
+     * @return - the word of the completing card (only meaningful if the cards can be completed to a set).
+     */
+    long completion(long values, long common, int word) {
+        long same = nonEmpty(common, word);
+        long sameFields = same - (same >>> featureSize); // all the value bits of the fields with a shared value
+        return common | (full[word] & ~values & ~sameFields);
+    }
+
+    /**
+     * Returns the guard bits of the fields of a word that hold more than one value.
+     *
+     * @param values - the OR of some packed words (every field in use must be non empty).
+     * @param word   - the index of the word.
+     * @return - the guard bit of each field with two or more value bits set.
+     */
+    long mixed(long values, int word) {
+        return nonEmpty(values & (values - low[word]), word);
+    }
+
+    /**
+     * Returns the guard bits of the fields of a word that do not hold all the values.
+     *
+     * @param values - the OR of some packed words.
+     * @param word   - the index of the word.
+     * @return - the guard bit of each field in use with some value bit clear.
+     */
+    long partial(long values, int word) {
+        return nonEmpty(values ^ full[word], word);
+    }
+
+    /**
+     * Returns the guard bits of the non empty fields of a word. Adding all ones to a field carries into its guard bit
+     * iff the field is not zero, and never past it.
+     *
+     * @param values - the packed word (guard bits must be clear).
+     * @param word   - the index of the word.
+     * @return - the guard bit of each non empty field.
+     */
+    long nonEmpty(long values, int word) {
+        return (values + full[word]) & guard[word];
+    }
+}
@@ -0,0 +1,171 @@
+package bguspl.set;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Maps every pair of cards to the card that completes a legal set with them (only for a feature size of 3, where
+ * this card is unique). The table is built once from the configured feature geometry and stored as a flat array of
+ * 16 bit card ids, indexed by first * deckSize + second.
+ */
+public abstract class SetCompletionTable {
+
+    /**
+     * Identifies a memory mapped completion table file ("SETC").
+     */
+    private static final int MAGIC = 0x53455443;
+
+    /**
+     * The size (in bytes) of the header of a memory mapped completion table file: magic, feature size and count.
+     */
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    protected final int featureCount;
+    protected final int deckSize;
+
+    protected SetCompletionTable(int featureCount, int deckSize) {
+        this.featureCount = featureCount;
+        this.deckSize = deckSize;
+    }
+
+    /**
+     * Returns the card that completes a legal set with the two given cards.
+     *
+     * @param first  - the first card id.
+     * @param second - the second card id.
+     * @return - the id of the only card that forms a legal set with first and second.
+     */
+    public abstract int complete(int first, int second);
+
+    /**
+     * Creates the completion table that fits the configuration: a heap table for small decks, a memory mapped file
+     * for large ones (if a cache directory is configured), and an on the fly computation if the table cannot be
+     * precomputed at all: when the card ids do not fit in 16 bits, or the pairs of cards do not fit in an int index.
+     *
+     * @param config - the game configuration (must have a feature size of 3).
+     * @return - the completion table.
+     */
+    public static SetCompletionTable create(Config config) {
+        if (config.featureSize != 3)
+            throw new IllegalArgumentException("set completion is only defined for a feature size of 3");
+
+        long pairs = (long) config.deckSize * config.deckSize;
+        if (config.deckSize > Character.MAX_VALUE + 1 || pairs > Integer.MAX_VALUE)
+            return new Computed(config.featureCount, config.deckSize);
+        long bytes = pairs * Character.BYTES;
+        if (bytes <= config.completionTableMaxHeapBytes)
+            return new Heap(config.featureCount, config.deckSize);
+        if (!config.completionTableDirectory.isEmpty() && HEADER_BYTES + bytes <= Integer.MAX_VALUE) {
+            File file = new File(config.completionTableDirectory, "completion_" + config.featureCount + ".bin");
+            try {
+                return new Mapped(config.featureCount, config.deckSize, file);
+            } catch (IOException ignored) {
+                // the cache directory is not usable, compute the completions on the fly instead
+            }
+        }
+        return new Computed(config.featureCount, config.deckSize);
+    }
+
+    /**
+     * Computes the card that completes a set with the two given cards, feature by feature.
+     *
+     * @param first        - the first card id.
+     * @param second       - the second card id.
+     * @param featureCount - the number of features on the cards.
+     * @return - the id of the only card that forms a legal set with first and second.
+     */
+    static int thirdCard(int first, int second, int featureCount) {
+        int third = 0;
+        for (int i = 0, weight = 1; i < featureCount; ++i, weight *= 3) {
+            third += (6 - first % 3 - second % 3) % 3 * weight;
+            first /= 3;
+            second /= 3;
+        }
+        return third;
+    }
+
+    /**
+     * Fills a table with the completions of all pairs of cards.
+     */
+    private static void fill(CharBuffer table, int featureCount, int deckSize) {
+        for (int first = 0; first < deckSize; ++first)
+            for (int second = 0; second < deckSize; ++second)
+                table.put((char) thirdCard(first, second, featureCount));
+    }
+
+    /**
+     * A completion table stored on the heap.
+     */
+    static class Heap extends SetCompletionTable {
+
+        private final char[] table;
+
+        Heap(int featureCount, int deckSize) {
+            super(featureCount, deckSize);
+            table = new char[deckSize * deckSize];
+            fill(CharBuffer.wrap(table), featureCount, deckSize);
+        }
+
+        @Override
+        public int complete(int first, int second) {
+            return table[first * deckSize + second];
+        }
+    }
+
+    /**
+     * A completion table stored in a memory mapped file, so it costs no heap and is only built on the first run.
+     */
+    static class Mapped extends SetCompletionTable {
+
+        private final CharBuffer table;
+
+        Mapped(int featureCount, int deckSize, File file) throws IOException {
+            super(featureCount, deckSize);
+            long size = HEADER_BYTES + (long) deckSize * deckSize * Character.BYTES;
+
+            //noinspection ResultOfMethodCallIgnored
+            file.getParentFile().mkdirs();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+                boolean valid = channel.size() == size;
+                if (!valid) raf.setLength(size);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (valid && buffer.getInt(0) == MAGIC && buffer.getInt(Integer.BYTES) == 3
+                        && buffer.getInt(2 * Integer.BYTES) == featureCount) {
+                    buffer.position(HEADER_BYTES);
+                    table = buffer.slice().asCharBuffer();
+                    return;
+                }
+
+                // build the table and write the header last, so a partially written file is never reused
+                buffer.position(HEADER_BYTES);
+                table = buffer.slice().asCharBuffer();
+                fill(table.duplicate(), featureCount, deckSize);
+                buffer.putInt(Integer.BYTES, 3).putInt(2 * Integer.BYTES, featureCount).putInt(0, MAGIC);
+            }
+        }
+
+        @Override
+        public int complete(int first, int second) {
+            return table.get(first * deckSize + second);
+        }
+    }
+
+    /**
+     * Computes the completions on the fly, for decks that are too large to precompute.
+     */
+    static class Computed extends SetCompletionTable {
+
+        Computed(int featureCount, int deckSize) {
+            super(featureCount, deckSize);
+        }
+
+        @Override
+        public int complete(int first, int second) {
+            return thirdCard(first, second, featureCount);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package bguspl.set;
+
+/**
+ * Receives the legal sets found in a collection of cards, one at a time.
+ */
+@FunctionalInterface
+public interface SetConsumer {
+
+    /**
+     * Accepts a legal set.
+     *
+     * @param set - the card ids of the set (the array may be reused for the next set, so copy it to keep it).
+     * @return - true to continue to the next set, false to stop.
+     */
+    boolean accept(int[] set);
+}
@@ -0,0 +1,356 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Finds the legal sets in an array of cards with a pruned backtracking search over the bit packed cards. A partial
+ * selection is abandoned as soon as some feature is neither shared by all of its cards nor different in all of them.
+ * The last card of a set is never searched for (when the set has three cards or more): it is computed from the
+ * others and looked up. The sets are reported in the lexicographic order of their positions in the array.
+ * <p>
+ * Arrays of at least config.findSetsParallelThreshold cards are searched in parallel: the first card of the sets is
+ * split into ranges that run as fork/join tasks, and the results are merged in order, so they are the same as those
+ * of a sequential search.
+ */
+public class SetFinder {
+
+    private final Config config;
+    private final PackedCards packedCards;
+
+    /**
+     * The card that completes each pair of cards to a set (null unless the feature size is 3).
+     */
+    private final SetCompletionTable completions;
+
+    /**
+     * The pool of the parallel searches (created on first use).
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * @param config      - the game configuration.
+     * @param packedCards - the bit packed cards of the deck.
+     * @param completions - the set completion table (null unless the feature size is 3).
+     */
+    public SetFinder(Config config, PackedCards packedCards, SetCompletionTable completions) {
+        this.config = config;
+        this.packedCards = packedCards;
+        this.completions = completions;
+    }
+
+    /**
+     * Passes up to count sets in an array of cards to a consumer, in order.
+     *
+     * @param cards    - an array of distinct card ids.
+     * @param count    - the maximum number of sets to pass.
+     * @param consumer - receives the card ids of each set, in the order of the array (see SetConsumer).
+     */
+    public void forEachSet(int[] cards, int count, SetConsumer consumer) {
+        int[] position = positions(cards);
+        if (!parallel(cards)) {
+            int[] found = {0};
+            new Search(cards, cards.length, position).run(-1, set -> consumer.accept(set) && ++found[0] < count);
+            return;
+        }
+
+        int found = 0;
+        for (List<int[]> range : searchInParallel(cards, position, count, true).sets)
+            for (int[] set : range)
+                if (!consumer.accept(set) || ++found >= count) return;
+    }
+
+    /**
+     * Counts the sets in an array of cards, up to a limit.
+     *
+     * @param cards - an array of distinct card ids.
+     * @param count - the maximum number of sets to count.
+     * @return - the number of legal sets of cards from the array (at most count).
+     */
+    public int countSets(int[] cards, int count) {
+        if (count <= 0) return 0;
+        int[] position = positions(cards);
+        if (!parallel(cards)) {
+            int[] found = {0};
+            new Search(cards, cards.length, position).run(-1, set -> ++found[0] < count);
+            return found[0];
+        }
+
+        int found = 0;
+        for (int range : searchInParallel(cards, position, count, false).found)
+            found += range;
+        return Math.min(found, count);
+    }
+
+    private boolean parallel(int[] cards) {
+        return config.findSetsParallelism > 1 && cards.length >= config.findSetsParallelThreshold;
+    }
+
+    /**
+     * Splits the search between the threads of the pool, by ranges of the first card of the sets. Every range keeps
+     * its own sets, and stops once the ranges before it are done and have found count sets between them.
+     *
+     * @param keep - true to keep the sets found in each range, false to only count them.
+     * @return - the ranges (only the ranges up to the first count sets are complete).
+     */
+    private Ranges searchInParallel(int[] cards, int[] position, int count, boolean keep) {
+        Ranges ranges = new Ranges(cards.length, Math.max(count, 1));
+        List<RecursiveAction> tasks = new ArrayList<>(ranges.found.length);
+        for (int i = 0; i < ranges.found.length; ++i) {
+            int range = i;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    List<int[]> sets = keep ? new ArrayList<>() : Collections.emptyList();
+                    int[] found = {0};
+                    Search search = new Search(cards, cards.length, position);
+                    search.first = ranges.bounds[range];
+                    search.firstEnd = ranges.bounds[range + 1];
+                    search.cancelled = () -> range > ranges.cutoff;
+                    search.run(-1, set -> {
+                        if (keep) sets.add(set.clone());
+                        return ++found[0] < ranges.count && range <= ranges.cutoff;
+                    });
+                    ranges.done(range, found[0], sets);
+                }
+            });
+        }
+        pool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return ranges;
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) pool = new ForkJoinPool(config.findSetsParallelism);
+        return pool;
+    }
+
+    /**
+     * The ranges of the first card of a parallel search, and the sets found in each.
+     */
+    private class Ranges {
+
+        /**
+         * Range i covers the first cards bounds[i] ... bounds[i + 1] - 1.
+         */
+        private final int[] bounds;
+        private final int count;
+
+        /**
+         * The number of sets found in each range, and the sets themselves (if kept).
+         */
+        private final int[] found;
+        private final List<List<int[]>> sets;
+        private final boolean[] done;
+
+        /**
+         * The number of ranges at the start that are done, and the number of sets they found.
+         */
+        private int donePrefix;
+        private int prefixFound;
+
+        /**
+         * The last range whose sets may be needed (ranges after it stop as soon as they see it).
+         */
+        private volatile int cutoff = Integer.MAX_VALUE;
+
+        private Ranges(int cards, int count) {
+            this.count = count;
+
+            // the earlier first cards have more cards after them, so the ranges are balanced by the number of pairs
+            int ranges = Math.min(cards, config.findSetsParallelism * 16);
+            long pairs = (long) cards * (cards - 1) / 2;
+            int[] bounds = new int[ranges + 1];
+            int range = 1;
+            long sum = 0;
+            for (int first = 0; first < cards && range < ranges; ++first) {
+                sum += cards - 1 - first;
+                if (sum * ranges >= pairs * range) bounds[range++] = first + 1;
+            }
+            while (range <= ranges) bounds[range++] = cards;
+            this.bounds = bounds;
+            found = new int[ranges];
+            sets = new ArrayList<>(Collections.nCopies(ranges, null));
+            done = new boolean[ranges];
+        }
+
+        private synchronized void done(int range, int rangeFound, List<int[]> rangeSets) {
+            found[range] = rangeFound;
+            sets.set(range, rangeSets);
+            done[range] = true;
+            while (donePrefix < done.length && done[donePrefix] && cutoff == Integer.MAX_VALUE) {
+                prefixFound += found[donePrefix];
+                if (prefixFound >= count) cutoff = donePrefix;
+                ++donePrefix;
+            }
+        }
+    }
+
+    private int[] positions(int[] cards) {
+        return positions(cards, cards.length);
+    }
+
+    private int[] positions(int[] cards, int length) {
+        int[] position = new int[config.deckSize];
+        for (int i = 0; i < length; ++i)
+            position[cards[i]] = i + 1;
+        return position;
+    }
+
+    /**
+     * Counts the sets in an array of cards that contain a given card.
+     *
+     * @param card  - the card id that every counted set must contain.
+     * @param cards - an array of distinct card ids that includes card.
+     * @return - the number of legal sets of cards from the array that contain card.
+     */
+    public int countSetsContaining(int card, int[] cards) {
+        return countSetsContaining(card, cards, cards.length);
+    }
+
+    /**
+     * Counts the sets among the first cards of an array that contain a given card.
+     *
+     * @param card   - the card id that every counted set must contain.
+     * @param cards  - an array whose first length entries are distinct card ids that include card.
+     * @param length - the number of cards of the array to search.
+     * @return - the number of legal sets of cards from the first length entries that contain card.
+     */
+    public int countSetsContaining(int card, int[] cards, int length) {
+        int[] sets = {0};
+        new Search(cards, length, positions(cards, length)).run(card, set -> {
+            ++sets[0];
+            return true;
+        });
+        return sets[0];
+    }
+
+    /**
+     * The state of a single search: the candidate cards and, for every depth, the OR and AND of the words of the
+     * selected cards and the guard bits of the features that can no longer be all different.
+     */
+    private class Search {
+
+        private final int setSize = config.featureSize;
+        private final int words = packedCards.words();
+        private final int[] cards;
+        private final int length; // the number of candidates, at the start of cards
+        private final int[] position; // index + 1 of each card in cards (0 if not a candidate), may be shared
+        private final int[] set = new int[setSize];
+        private final long[] values = new long[(setSize + 1) * words];
+        private final long[] common = new long[(setSize + 1) * words];
+        private final long[] repeated = new long[(setSize + 1) * words];
+        private final long[] last = new long[words];
+        private SetConsumer consumer;
+        private int fixed;
+
+        /**
+         * The range of the first card of the sets, and a check that stops the search between first cards.
+         */
+        private int first = 0;
+        private int firstEnd = Integer.MAX_VALUE;
+        private BooleanSupplier cancelled = () -> false;
+
+        private Search(int[] cards, int length, int[] position) {
+            this.cards = cards;
+            this.length = length;
+            this.position = position;
+        }
+
+        /**
+         * Runs the search.
+         *
+         * @param fixed    - a card that every set must contain (-1 for none).
+         * @param consumer - receives every set found (in a reused array), returns false to stop the search.
+         */
+        private void run(int fixed, SetConsumer consumer) {
+            this.consumer = consumer;
+            this.fixed = fixed;
+            if (fixed < 0) {
+                extend(0, first);
+            } else {
+                position[fixed] = 0; // the fixed card is not a candidate for the other cards
+                select(0, fixed);
+                set[0] = fixed;
+                if (setSize == 1) consumer.accept(set);
+                else extend(1, 0);
+            }
+        }
+
+        /**
+         * Selects the rest of a set.
+         *
+         * @param depth - the number of cards already selected.
+         * @param from  - the index of the first candidate in cards.
+         * @return - false iff the consumer asked to stop.
+         */
+        private boolean extend(int depth, int from) {
+            if (depth == setSize - 1 && depth >= 2) {
+                int card = complete(depth);
+                if (position[card] > from) { // each set is reported once, by its first cards
+                    set[depth] = card;
+                    return consumer.accept(set);
+                }
+                return true;
+            }
+
+            int end = length - setSize + depth;
+            if (depth == 0) end = Math.min(end, firstEnd - 1);
+            for (int i = from; i <= end; ++i) {
+                if (depth == 0 && cancelled.getAsBoolean()) return false;
+                if (cards[i] == fixed || !select(depth, cards[i])) continue;
+                set[depth] = cards[i];
+                if (depth + 1 == setSize) {
+                    if (!consumer.accept(set)) return false;
+                } else if (!extend(depth + 1, i + 1)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Adds a card to the selection at some depth.
+         *
+         * @return - false iff the selection can no longer be completed to a legal set.
+         */
+        private boolean select(int depth, int card) {
+            int from = depth * words, to = from + words;
+            if (depth == 0) {
+                for (int w = 0; w < words; ++w) {
+                    values[to + w] = common[to + w] = packedCards.word(card, w);
+                    repeated[to + w] = 0;
+                }
+                return true;
+            }
+
+            long illegal = 0;
+            for (int w = 0; w < words; ++w) {
+                long word = packedCards.word(card, w);
+                values[to + w] = values[from + w] | word;
+                common[to + w] = common[from + w] & word;
+                repeated[to + w] = repeated[from + w] | packedCards.nonEmpty(values[from + w] & word, w);
+                illegal |= repeated[to + w] & ~packedCards.nonEmpty(common[to + w], w);
+            }
+            return illegal == 0;
+        }
+
+        /**
+         * Computes the only card that completes the selected cards to a legal set.
+         */
+        private int complete(int depth) {
+            if (completions != null) return completions.complete(set[0], set[1]);
+            int from = depth * words;
+            for (int w = 0; w < words; ++w)
+                last[w] = packedCards.completion(values[from + w], common[from + w], w);
+            return packedCards.card(last, 0);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Plays complete games between computer players as fast as the threads can run: with no user interface, no table
+ * delays and a virtual clock. The games are played on a GameHost, config.simulationConcurrentGames at a time. Used to
+ * measure the throughput of the game engine.
+ */
+public class Simulation {
+
+    private final Config config;
+    private final GameHost host;
+
+    /**
+     * The totals over all the games played so far.
+     */
+    private int games;
+    private long sets;
+    private long penalties;
+    private long nanos;
+
+    /**
+     * @param logger     - the logger.
+     * @param properties - the game configuration (human players and delays are overridden).
+     */
+    public Simulation(Logger logger, Properties properties) {
+        Properties simulation = new Properties();
+        simulation.putAll(properties);
+        simulation.setProperty("HumanPlayers", "0");
+        if (Integer.parseInt(simulation.getProperty("ComputerPlayers", "0")) <= 0)
+            simulation.setProperty("ComputerPlayers", "2");
+        simulation.setProperty("Hints", "False");
+        simulation.setProperty("TableDelaySeconds", "0");
+        simulation.setProperty("EndGamePauseSeconds", "0");
+
+        config = new Config(logger, simulation);
+        host = new GameHost(logger, config, new UtilImpl(config), GameClock.Virtual::new,
+                ThreadFactories.create(config, logger));
+    }
+
+    /**
+     * Plays a number of games.
+     *
+     * @param games - the number of games to play.
+     * @throws InterruptedException - if the thread is interrupted while waiting for the games to end.
+     */
+    public void run(int games) throws InterruptedException {
+        long start = System.nanoTime();
+        List<GameHost.GameResult> results = host.play(games, config.simulationConcurrentGames);
+        nanos += System.nanoTime() - start;
+        this.games += results.size();
+        for (GameHost.GameResult result : results) {
+            sets += result.sets;
+            penalties += result.penalties;
+        }
+    }
+
+    /**
+     * @return - a summary of the throughput over all the games played.
+     */
+    public String summary() {
+        double seconds = nanos / 1e9;
+        int concurrent = Math.max(Math.min(config.simulationConcurrentGames, games), 1);
+        return String.format("%d games in %.3f seconds: %.2f games/sec, %.1f sets/sec, %.1f penalties/sec "
+                        + "(%d at a time, peak %d threads, peak heap %d KB in the host)",
+                games, seconds, games / seconds, sets / seconds, penalties / seconds,
+                concurrent, host.peakThreads(), host.peakHeapBytes() / 1024);
+    }
+}
@@ -0,0 +1,31 @@
+package bguspl.set;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Creates the thread factory of the game threads (dealer, players and AI) according to the configuration.
+ */
+public class ThreadFactories {
+
+    /**
+     * Returns the thread factory for the configuration: virtual threads if config.virtualThreads is set and the JVM
+     * supports them (Java 21 and later), platform threads otherwise. Virtual threads are looked up reflectively, so
+     * the game still builds and runs on Java 8.
+     *
+     * @param config - the game configuration.
+     * @param logger - the logger (for a warning if virtual threads are not available).
+     * @return - the thread factory.
+     */
+    public static ThreadFactory create(Config config, Logger logger) {
+        if (!config.virtualThreads) return Thread::new;
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            // the builder's class is not public, so its method is looked up on the public Thread.Builder interface
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.severe("warning: virtual threads are not supported by this JVM, using platform threads.");
+            return Thread::new;
+        }
+    }
+}
@@ -105,7 +105,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         private final Image emptyCard;
         private final Image[] deck;
         private final Image[][] grid;
-        private final boolean[][][] playerTokens;
+        private final long[][] slotTokens; // a bit per player with a token on the slot
         private final JLabel[][] tokenText;
 
         private Image loadImageResource(String filename) {
@@ -130,7 +130,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
             grid = new Image[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            slotTokens = new long[config.tableSize][(config.players + Long.SIZE - 1) / Long.SIZE];
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
@@ -164,11 +164,23 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             repaint();
         }
 
+        private void placeCards(int[] cards, int[] slots) {
+            for (int i = 0; i < slots.length; i++)
+                grid[slots[i] / config.columns][slots[i] % config.columns] = deck[cards[i]];
+            validate();
+            repaint();
+        }
+
+        private void removeCards(int[] slots) {
+            for (int slot : slots)
+                grid[slot / config.columns][slot % config.columns] = emptyCard;
+            validate();
+            repaint();
+        }
+
         private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            slotTokens[slot][player / Long.SIZE] |= 1L << player;
+            tokenText[slot / config.columns][slot % config.columns].setText(generatePlayersTokenText(slot));
         }
 
         private void removeTokens() {
@@ -177,30 +189,24 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
-            }
+            Arrays.fill(slotTokens[slot], 0);
+            tokenText[slot / config.columns][slot % config.columns].setText("");
         }
 
         private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+            slotTokens[slot][player / Long.SIZE] &= ~(1L << player);
+            tokenText[slot / config.columns][slot % config.columns].setText(generatePlayersTokenText(slot));
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+        private String generatePlayersTokenText(int slot) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < slotTokens[slot].length; w++) {
+                for (long players = slotTokens[slot][w]; players != 0; players &= players - 1) {
+                    if (text.length() > 0) text.append(", ");
+                    text.append(config.playerNames[w * Long.SIZE + Long.numberOfTrailingZeros(players)]);
+                }
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            return text.toString();
         }
 
         @Override
@@ -284,6 +290,16 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         gamePanel.removeCard(slot);
     }
 
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        gamePanel.placeCards(cards, slots);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        gamePanel.removeCards(slots);
+    }
+
     @Override
     public void placeToken(int player, int slot) {
         gamePanel.placeToken(player, slot);
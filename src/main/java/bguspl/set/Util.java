@@ -1,5 +1,6 @@
 package bguspl.set;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -40,6 +41,53 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Passes up to count sets in the given array of cards to a consumer, without collecting them.
+     *
+     * @param cards    - an array of distinct card ids.
+     * @param count    - the maximum number of sets to pass.
+     * @param consumer - receives the card ids of each set, in the order of the array (see SetConsumer).
+     */
+    void forEachSet(int[] cards, int count, SetConsumer consumer);
+
+    /**
+     * Counts the sets in the given array of cards, up to a limit.
+     *
+     * @param cards - an array of distinct card ids.
+     * @param count - the maximum number of sets to count.
+     * @return - the number of legal sets of cards from the array (at most count).
+     */
+    int countSets(int[] cards, int count);
+
+    /**
+     * Checks if there is a legal set in the given array of cards.
+     *
+     * @param cards - an array of distinct card ids.
+     * @return - true iff some cards of the array form a legal set.
+     */
+    boolean containsSet(int[] cards);
+
+    /**
+     * Counts the sets in the given array of cards that contain a given card.
+     *
+     * @param card  - the card id that every counted set must contain.
+     * @param cards - an array of distinct card ids that includes card.
+     * @return - the number of legal sets of cards from the array that contain card.
+     */
+    int countSetsContaining(int card, int[] cards);
+
+    /**
+     * Counts the sets among the first cards of an array that contain a given card, without copying them.
+     *
+     * @param card   - the card id that every counted set must contain.
+     * @param cards  - an array whose first length entries are distinct card ids that include card.
+     * @param length - the number of cards of the array to use.
+     * @return - the number of legal sets of cards from the first length entries that contain card.
+     */
+    default int countSetsContaining(int card, int[] cards, int length) {
+        return countSetsContaining(card, length == cards.length ? cards : Arrays.copyOf(cards, length));
+    }
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -13,8 +13,39 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The card that completes each pair of cards to a set (null unless the feature size is 3).
+     */
+    private final SetCompletionTable completions;
+
+    /**
+     * The features of all cards in the deck, row by row (the features of card c start at c * featureCount).
+     */
+    private final int[] featureMatrix;
+
+    /**
+     * The bit packed cards, for validating a set of featureSize cards without a loop over the features (null if the
+     * feature size is too big to pack).
+     */
+    private final PackedCards packedCards;
+
+    /**
+     * The pruned set search over the packed cards (null if the cards cannot be packed).
+     */
+    private final SetFinder setFinder;
+
     public UtilImpl(Config config) {
         this.config = config;
+        completions = config.featureSize == 3 ? SetCompletionTable.create(config) : null;
+        packedCards = PackedCards.supports(config) ? new PackedCards(config) : null;
+        setFinder = packedCards != null ? new SetFinder(config, packedCards, completions) : null;
+
+        featureMatrix = new int[config.deckSize * config.featureCount];
+        int[] features = new int[config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card) {
+            cardToFeatures(card, features);
+            System.arraycopy(features, 0, featureMatrix, card * config.featureCount, config.featureCount);
+        }
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -26,35 +57,41 @@ public class UtilImpl implements Util {
 
     @Override
     public int[] cardToFeatures(int card) {
-        int[] features = new int[config.featureCount];
-        cardToFeatures(card, features);
-        return features;
+        return Arrays.copyOfRange(featureMatrix, card * config.featureCount, (card + 1) * config.featureCount);
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        IntStream.range(0, cards.length).forEach(i ->
+                System.arraycopy(featureMatrix, cards[i] * config.featureCount, features[i], 0, config.featureCount));
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
+        if (completions != null && cards.length == 3)
+            return completions.complete(cards[0], cards[1]) == cards[2];
+        if (packedCards != null && cards.length == config.featureSize)
+            return packedCards.isSet(cards);
+
+        // the features are read straight from the feature matrix, so checking a claim allocates nothing
+        int featureCount = config.featureCount;
+        for (int i = 0; i < featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
 
             // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
+            int first = featureMatrix[cards[0] * featureCount + i];
+            for (int j = 1; j < cards.length; ++j)
+                if (first != featureMatrix[cards[j] * featureCount + i]) {
                     sameSame = false;
                     break;
                 }
 
             // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
+            for (int j = 1; j < cards.length && butDifferent; ++j)
+                for (int k = j; k < cards.length; ++k)
+                    if (featureMatrix[cards[j - 1] * featureCount + i] == featureMatrix[cards[k] * featureCount + i]) {
                         butDifferent = false;
                         break;
                     }
@@ -67,19 +104,34 @@ public class UtilImpl implements Util {
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        forEachSet(deck.stream().mapToInt(Integer::intValue).toArray(), count, set -> {
+            int[] sorted = set.clone();
+            Arrays.sort(sorted);
+            return sets.add(sorted);
+        });
+        return sets;
+    }
+
+    @Override
+    public void forEachSet(int[] cards, int count, SetConsumer consumer) {
+        if (setFinder != null) {
+            setFinder.forEachSet(cards, count, consumer);
+            return;
+        }
+
+        int n = cards.length;
         int r = config.featureSize;
         int[] combination = new int[r];
+        int[] set = new int[r];
+        int found = 0;
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
-            }
+        while (combination[r - 1] < n) {
+            for (int i = 0; i < r; ++i)
+                set[i] = cards[combination[i]];
+            if (testSet(set) && (!consumer.accept(set) || ++found >= count)) return;
 
             // generate next combination in lexicographic order
             int t = r - 1;
@@ -87,9 +139,56 @@ public class UtilImpl implements Util {
             combination[t]++;
             for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
+    }
+
+    @Override
+    public int countSets(int[] cards, int count) {
+        if (setFinder != null) return setFinder.countSets(cards, count);
+
+        int[] found = {0};
+        if (count > 0) forEachSet(cards, count, set -> ++found[0] < count);
+        return found[0];
+    }
+
+    @Override
+    public boolean containsSet(int[] cards) {
+        return countSets(cards, 1) > 0;
+    }
+
+    @Override
+    public int countSetsContaining(int card, int[] cards) {
+        if (setFinder != null) return setFinder.countSetsContaining(card, cards);
+
+        // complete card to a set with every combination of featureSize - 1 of the other cards
+        int r = config.featureSize;
+        if (r == 1) return 1;
+        int[] others = Arrays.stream(cards).filter(other -> other != card).toArray();
+        int sets = 0;
+        int[] set = new int[r];
+        set[0] = card;
+        int[] combination = new int[r - 1];
+        for (int i = 0; i < r - 1; ++i)
+            combination[i] = i;
+        while (combination[r - 2] < others.length) {
+            for (int i = 1; i < r; ++i)
+                set[i] = others[combination[i - 1]];
+            if (testSet(set)) ++sets;
+
+            // generate next combination in lexicographic order
+            int t = r - 2;
+            while (t != 0 && combination[t] == others.length - r + 1 + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 1; i++) combination[i] = combination[i - 1] + 1;
+        }
         return sets;
     }
 
+    @Override
+    public int countSetsContaining(int card, int[] cards, int length) {
+        if (setFinder != null) return setFinder.countSetsContaining(card, cards, length);
+        return Util.super.countSetsContaining(card, cards, length);
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
         long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
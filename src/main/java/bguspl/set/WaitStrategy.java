@@ -0,0 +1,22 @@
+package bguspl.set;
+
+/**
+ * How a thread waits for a queue it depends on (e.g. a player waiting for key presses), trading latency for CPU.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Block (park) right away: no CPU while waiting, the wake up latency of a park.
+     */
+    BLOCK,
+
+    /**
+     * Keep checking and yield the processor in between: the lowest latency, but a waiting thread stays runnable.
+     */
+    YIELD,
+
+    /**
+     * Check in a short busy spin first, then block: low latency for short waits, no CPU for long ones.
+     */
+    SPIN_THEN_PARK
+}
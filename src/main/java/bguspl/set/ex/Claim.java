@@ -0,0 +1,35 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A request of a player for the dealer to check the cards its tokens are on.
+ */
+public class Claim {
+
+    /**
+     * The player that made the claim.
+     */
+    public final Player player;
+
+    /**
+     * The time the claim was made (System.nanoTime), for measuring the claim to verdict latency.
+     */
+    public final long claimedAt;
+
+    /**
+     * The sum of the versions of the slots of the player's tokens when the claim was made (see Table.versionSum).
+     */
+    public final long versions;
+
+    /**
+     * Completed by the dealer once the claim was checked.
+     */
+    public final CompletableFuture<Verdict> verdict = new CompletableFuture<>();
+
+    public Claim(Player player, long versions) {
+        this.player = player;
+        this.versions = versions;
+        this.claimedAt = System.nanoTime();
+    }
+}
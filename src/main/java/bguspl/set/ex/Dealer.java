@@ -4,11 +4,14 @@ import bguspl.set.Env;
 
 import java.util.List;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.Collections;
 import java.util.LinkedList;
-import java.util.Vector;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class manages the dealer's threads and data
@@ -25,16 +28,30 @@ public class Dealer implements Runnable {
      */
     private final Table table;
     private final Player[] players;
-    public Vector<Player> setCalls = new Vector<Player>();
-    private long globalTimer=0;
     private long displayTime=60000;
     protected Thread dealerThread;
-    public volatile boolean isFree=true;//dealer is free to check sets
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The claims waiting to be checked (added by any player thread, taken by the dealer thread only).
      */
-    private final List<Integer> deck;
+    public final Queue<Claim> setCalls = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Claim to verdict latency statistics (updated by the dealer thread only).
+     */
+    private long claimsChecked;
+    private long claimLatencyNanos;
+    private long maxClaimLatencyNanos;
+
+    /**
+     * The card ids that are left in the dealer's deck.
+     */
+    private final Deck deck;
+
+    /**
+     * The number of legal sets left among the cards in the deck and on the table.
+     */
+    private final RemainingSets remainingSets;
 
     /**
      * True iff game should be terminated due to an external event.
@@ -46,7 +63,11 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
-    private int sleep=1000;//amount of time for dealer to sleep between timer update
+    /**
+     * The countdown is updated every second, and every WARNING_TICK_MILLIS once it is in the warning range.
+     */
+    private static final long TICK_MILLIS = 1000;
+    private static final long WARNING_TICK_MILLIS = 10;
 
     
     private boolean firstLoop = true;
@@ -56,7 +77,8 @@ public class Dealer implements Runnable {
         this.table = table;
         this.players = players;
         terminate=false;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = new Deck(env.config.deckSize);
+        remainingSets = new RemainingSets(env);
     }
 
     /**
@@ -73,8 +95,7 @@ public class Dealer implements Runnable {
             }
             if(firstLoop){//starting players
                 for (int i = 0; i < players.length; i++) {
-                    players[i].setThread();
-                    players[i].getThread().start();
+                    players[i].start();
                 }
             }
             displayTime=env.config.turnTimeoutMillis;
@@ -88,6 +109,9 @@ public class Dealer implements Runnable {
         }
         announceWinners();
         terminate();
+        env.logger.log(Level.INFO, "checked " + claimsChecked + " claims, mean claim latency "
+                + TimeUnit.NANOSECONDS.toMicros(meanClaimLatencyNanos()) + " us, max "
+                + TimeUnit.NANOSECONDS.toMicros(maxClaimLatencyNanos) + " us.");
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
@@ -95,18 +119,18 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        reshuffleTime=System.currentTimeMillis() + env.config.turnTimeoutMillis+500;
-        globalTimer = System.currentTimeMillis();
+        reshuffleTime=env.clock.currentTimeMillis() + env.config.turnTimeoutMillis+500;
         if(!firstLoop){
             for (int i = 0; i < players.length; i++) {
                 if(!players[i].isHuman()){
-                    players[i].getAiThread().interrupt();
-                    players[i].getThread().interrupt();
+                    //unpark, not interrupt: a stale interrupt would make the next park or freeze end at once
+                    LockSupport.unpark(players[i].getAiThread());
+                    LockSupport.unpark(players[i].getThread());
                 }
             }
         }
         firstLoop=false;
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!terminate && env.clock.currentTimeMillis() < reshuffleTime) {
             sleepUntilWokenOrTimeout();
             updateTimerDisplay(false);
         }
@@ -116,11 +140,15 @@ public class Dealer implements Runnable {
      * Called when the game should be terminated due to an external event.
      */
     public void terminate() { 
+        for (Claim claim = setCalls.poll(); claim != null; claim = setCalls.poll())//no one will check these claims
+            claim.verdict.complete(Verdict.STALE);
         for (int i = players.length-1; i >=0 ; i--) {
             players[i].terminate();
-            players[i].getThread().interrupt();
-            players[i].getAiThread().interrupt();
-            try { players[i].getThread().join(); } catch (InterruptedException ignored) {}
+            if(players[i].getThread()!=null)
+                players[i].getThread().interrupt();
+            if(players[i].getAiThread()!=null)
+                players[i].getAiThread().interrupt();
+            try { players[i].join(); } catch (InterruptedException ignored) {}
         }
         terminate=true;
     }
@@ -131,7 +159,7 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || remainingSets.isEmpty();
     }
 
     /**
@@ -145,112 +173,117 @@ public class Dealer implements Runnable {
      * Check if any cards can be removed from the deck and placed on the table.
      */
     private void placeCardsOnTable() {
-        synchronized(table){
-            for (int i = 0; i < players.length; i++) {
-                players[i].removeAllTokens();
-            }
-            List<Integer> randSlots = new LinkedList<>();//for random cards placement 
-            for (int i = 0; i < 12; i++) {
-                randSlots.add(i);
-            }
-            Collections.shuffle(randSlots);
-            Collections.shuffle(deck);
-            boolean over=deck.isEmpty();
-            for (int i = 0; i < 12&& !over; i++) {
-                table.placeCard(deck.remove(0), randSlots.get(i));
-                over=deck.isEmpty();
-            }
+        List<Integer> randSlots = new LinkedList<>();//for random cards placement 
+        for (int i = 0; i < env.config.tableSize; i++) {
+            randSlots.add(i);
+        }
+        Collections.shuffle(randSlots);
+        int[] cards = new int[Math.min(env.config.tableSize, deck.size())];
+        int[] slots = new int[cards.length];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = deck.draw();
+            slots[i] = randSlots.get(i);
         }
+        table.placeCards(cards, slots);//the whole layout is dealt at once (locking only the slots dealt)
+        if (env.config.hints) table.hints();
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Sleep until the next scheduled event: a claim to check, the next countdown tick or the reshuffle deadline.
      */
     private void sleepUntilWokenOrTimeout() {
-      long currTime = System.currentTimeMillis();
-      if(System.currentTimeMillis()-globalTimer < sleep && System.currentTimeMillis()-globalTimer>0){//woke up because of a set
-            if(!setCalls.isEmpty()){
-                isFree=false;
-                Player p=setCalls.remove(0);
-                synchronized(p){
-                setTest(p);
-                }
-                isFree=true;
-            }
-            
-            try{Thread.currentThread().sleep(sleep-(currTime - globalTimer));
-            }
-                catch(InterruptedException ignored){}
+        checkClaims();
+        long now = env.clock.currentTimeMillis();
+        long wakeTime = nextTick(now);
+        while (!terminate && setCalls.isEmpty() && now < wakeTime) {//a new claim unparks the dealer
+            env.clock.parkUntil(this, wakeTime);
+            now = env.clock.currentTimeMillis();
         }
+        checkClaims();
+    }
 
-    else{
-        if(!setCalls.isEmpty()){
-            isFree=false;
-            Player p=setCalls.remove(0);
-            synchronized(p){
-            setTest(p);
-            }
-            isFree=true;
-        }
-        try{Thread.currentThread().sleep(sleep);
-        }
-            catch(InterruptedException ignored){}
-        }
-        globalTimer=currTime;
+    /**
+     * Returns the time of the next countdown update: the next time the displayed seconds change, every
+     * WARNING_TICK_MILLIS once in the warning range, and never later than the reshuffle time.
+     *
+     * @param now - the current time.
+     * @return - the time the dealer should wake up at if no claim comes first.
+     */
+    private long nextTick(long now) {
+        long remaining = reshuffleTime - now;
+        if (remaining <= env.config.turnTimeoutWarningMillis)
+            return now + Math.min(WARNING_TICK_MILLIS, Math.max(remaining, 0));
+        long tick = reshuffleTime - (remaining - 1) / TICK_MILLIS * TICK_MILLIS;
+        return Math.min(tick, reshuffleTime - env.config.turnTimeoutWarningMillis);
     }
 
-    public void addSet(Player player){
-        synchronized(setCalls){
-            setCalls.add(player);   
+    /**
+     * Checks all the claims that are waiting, in the order they were made.
+     */
+    private void checkClaims() {
+        for (Claim claim = setCalls.poll(); claim != null; claim = setCalls.poll()) {
+            claim.verdict.complete(setTest(claim));
+            long latency = System.nanoTime() - claim.claimedAt;
+            claimsChecked++;
+            claimLatencyNanos += latency;
+            maxClaimLatencyNanos = Math.max(maxClaimLatencyNanos, latency);
         }
     }
 
+    /**
+     * Adds a claim of a player and wakes the dealer up to check it.
+     *
+     * @param player - the player that has placed its last token.
+     * @return - a future that the dealer completes with the verdict.
+     */
+    public CompletableFuture<Verdict> addSet(Player player){
+        Claim claim = new Claim(player, table.versionSum(table.slotsOf(player.id)));
+        setCalls.add(claim);
+        env.clock.unpark(dealerThread);
+        return claim.verdict;
+    }
+
+    /**
+     * @return - the number of claims checked so far.
+     */
+    public long claimsChecked() {
+        return claimsChecked;
+    }
+
+    /**
+     * @return - the mean time (in nanoseconds) from a claim until its verdict is given to the player.
+     */
+    public long meanClaimLatencyNanos() {
+        return claimsChecked == 0 ? 0 : claimLatencyNanos / claimsChecked;
+    }
+
+    /**
+     * @return - the longest time (in nanoseconds) from a claim until its verdict was given to the player.
+     */
+    public long maxClaimLatencyNanos() {
+        return maxClaimLatencyNanos;
+    }
+
     //checks if the player's set is legal
-    private void setTest(Player player){
-        if(player.tokensCounter==3){
-            int[] cards = player.tokensOnTable[1];
-            boolean overlappingSet = false;
-            int cardsOverlapped=0;
-
-            //checking if the currest set request overlapped with previous set
-            for (int i = 0; i < cards.length; i++) {
-                int arrCard = player.tokensOnTable[1][i];
-                Integer tableCard = table.slotToCard[player.tokensOnTable[0][i]];
-                if(tableCard==null){//can happen when it overlapped with a set and there are less then 12 cards left
-                    overlappingSet = true;
-                    player.tokensOnTable[1][i]=-1;
-                    player.tokensOnTable[0][i]=-1;
-                    cardsOverlapped++;
-                }
-                else if(arrCard!=tableCard){//the current card is no longer on the table
-                    overlappingSet = true;
-                    player.tokensOnTable[1][i]=-1;
-                    player.tokensOnTable[0][i]=-1;
-                    cardsOverlapped++;
-                }
-            }
-            if(overlappingSet){//the set is not relevant, the player should continue
-                player.tokensCounter=player.tokensCounter-cardsOverlapped;
-                player.getThread().interrupt();
-            }
-            else{
-                boolean legal= env.util.testSet(cards);
-                if(!legal){
-                    player.setAvailability(false);
-                    player.shouldSleep=2;
-                    player.getThread().interrupt();
-                }
-                else{
-                    player.setAvailability(false);
-                    player.shouldSleep=1;
-                    replaceSetCards(player.tokensOnTable[0]);
-                    player.getThread().interrupt();
-                }
-            }
-            isFree=true;
+    private Verdict setTest(Claim claim){
+        Player player = claim.player;
+        int[] slots = table.slotsOf(player.id);//the tokens on cards that were replaced were removed with them
+        if(slots.length!=env.config.featureSize || table.versionSum(slots)!=claim.versions)
+            return Verdict.STALE;//the player keeps its other tokens
+        int[] cards = new int[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            cards[i]=table.cardAt(slots[i]);
+        }
+        boolean legal= env.util.testSet(cards);
+        if(!legal){
+            player.setAvailability(false);
+            return Verdict.PENALTY;
+        }
+        else{
+            player.setAvailability(false);
+            replaceSetCards(slots);
+            return Verdict.POINT;
         }
-        else
-            player.getThread().interrupt();
     }
 
     /**
@@ -258,13 +291,12 @@ public class Dealer implements Runnable {
      */
     private void updateTimerDisplay(boolean reset) {
         if(reset){
-            sleep=1000;
             env.ui.setCountdown(env.config.turnTimeoutMillis+500, false);
-            reshuffleTime=System.currentTimeMillis() + env.config.turnTimeoutMillis;
-            isFree=true;
+            reshuffleTime=env.clock.currentTimeMillis() + env.config.turnTimeoutMillis;
         }
         else{
-            env.ui.setCountdown(reshuffleTime-System.currentTimeMillis(), false);
+            long remaining = Math.max(reshuffleTime-env.clock.currentTimeMillis(), 0);
+            env.ui.setCountdown(remaining, remaining <= env.config.turnTimeoutWarningMillis);
         }
     }
 
@@ -272,24 +304,12 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        synchronized(table){
-            for (int i = 0; i < players.length; i++) {
-                players[i].removeAllTokens();
-            }
-            env.ui.removeTokens();
-            List<Integer> randSlots = new LinkedList<>();//for random cards removal
-            for (int i = 0; i < 12; i++) {
-                randSlots.add(i);
-            }
-            Collections.shuffle(randSlots);
-            for (int i = 0; i < 12; i++) {
-                int j = randSlots.get(i);
-                if(table.slotToCard[j]!=null){
-                    deck.add(table.slotToCard[j]);
-                    table.removeCard(j);
-                }
-            }
+        table.removeAllTokens();//clears the selections of all the players at once
+        int[] slots = IntStream.range(0, env.config.tableSize).filter(slot -> table.cardAt(slot)!=Table.EMPTY).toArray();
+        for (int slot : slots) {
+            deck.add(table.cardAt(slot));
         }
+        table.removeCards(slots);//the whole layout is cleared at once
     }
 
     /**
@@ -320,20 +340,19 @@ public class Dealer implements Runnable {
 
     //when a set is legal replace the set cards if exists.
     public void replaceSetCards(int[]setIndex){
-        for (int i = 0; i < setIndex.length; i++) {//removing set cards from table and deck
-            env.ui.removeTokens(setIndex[i]);
-            deck.remove(table.slotToCard[setIndex[i]]);
+        for (int i = 0; i < setIndex.length; i++) {//removing set cards (and the tokens on them) from table and deck
+            int card=table.cardAt(setIndex[i]);
+            remainingSets.remove(card);
+            deck.remove(card);
             table.removeCard(setIndex[i]);
-            table.slotToCard[setIndex[i]]=null;
         }
         boolean emptyDeck= deck.isEmpty();
         for (int i = 0; i < setIndex.length&& !emptyDeck; i++) {//putting new cards on the set's indexes 
-            table.placeCard(deck.remove(0), setIndex[i]);
+            table.placeCard(deck.draw(), setIndex[i]);
             emptyDeck=deck.isEmpty(); 
         }
         //resetting the timer after a set is found
-        globalTimer=System.currentTimeMillis();//timer start
-        reshuffleTime=globalTimer+env.config.turnTimeoutMillis;
+        reshuffleTime=env.clock.currentTimeMillis()+env.config.turnTimeoutMillis;
         displayTime=env.config.turnTimeoutMillis;
         env.ui.setCountdown(displayTime, false);
     }
@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A deck of card ids with O(1) random draws, returns and removals. The cards are kept unordered in the first size
+ * entries of an array, together with the position of each card in that array.
+ *
+ * @inv cards[position[c]] == c for every card c in the deck, position[c] == -1 for every other card
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck (the first size entries).
+     */
+    private final int[] cards;
+
+    /**
+     * The index of each card in cards (-1 if the card is not in the deck).
+     */
+    private final int[] position;
+
+    private int size;
+
+    /**
+     * Creates a full deck.
+     *
+     * @param deckSize - the number of cards (card ids are 0 ... deckSize - 1).
+     */
+    public Deck(int deckSize) {
+        cards = new int[deckSize];
+        position = new int[deckSize];
+        for (int card = 0; card < deckSize; ++card) {
+            cards[card] = card;
+            position[card] = card;
+        }
+        size = deckSize;
+    }
+
+    /**
+     * @return - the number of cards in the deck.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return - true iff there are no cards in the deck.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return position[card] >= 0;
+    }
+
+    /**
+     * Draws a random card from the deck (a single step of a Fisher-Yates shuffle).
+     *
+     * @return - the card drawn.
+     * @pre - the deck is not empty.
+     * @post - the card is no longer in the deck.
+     */
+    public int draw() {
+        int card = cards[ThreadLocalRandom.current().nextInt(size)];
+        remove(card);
+        return card;
+    }
+
+    /**
+     * Returns a card to the deck (does nothing if it is already in the deck).
+     *
+     * @param card - the card id.
+     */
+    public void add(int card) {
+        if (position[card] >= 0) return;
+        cards[size] = card;
+        position[card] = size++;
+    }
+
+    /**
+     * Removes a card from the deck.
+     *
+     * @param card - the card id.
+     * @return - true iff the card was in the deck.
+     */
+    public boolean remove(int card) {
+        int index = position[card];
+        if (index < 0) return false;
+        int last = cards[--size];
+        cards[index] = last;
+        position[last] = index;
+        position[card] = -1;
+        return true;
+    }
+
+    /**
+     * @return - the array that holds the cards in the deck in its first size() entries, in no particular order (not a
+     * copy: it changes with the deck).
+     */
+    int[] cards() {
+        return cards;
+    }
+
+    /**
+     * @return - a new array with the cards in the deck (in no particular order).
+     */
+    public int[] toArray() {
+        int[] deck = new int[size];
+        System.arraycopy(cards, 0, deck, 0, size);
+        return deck;
+    }
+}
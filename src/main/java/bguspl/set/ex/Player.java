@@ -4,7 +4,12 @@ import java.util.logging.Level;
 
 import bguspl.set.Env;
 import java.util.Random;
-import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This class manages the players' threads and data
@@ -35,10 +40,48 @@ public class Player implements Runnable {
     private Thread playerThread;
 
     /**
-     * The thread of the AI (computer) player (an additional thread used to generate key presses).
+     * The thread of the AI (computer) player (an additional thread used to generate key presses, null if the
+     * player has none: a human player, or a computer player whose presses are generated inline).
      */
     private Thread aiThread;
 
+    /**
+     * Runs the steps of the player as tasks (null if the player runs on its own thread instead).
+     */
+    private final Executor executor;
+
+    /**
+     * The number of times the player was woken up since its current step started (0 if no step is queued or
+     * running). A step is queued only by the wake up that finds no other step, so the steps never overlap.
+     */
+    private final AtomicInteger wakeups = new AtomicInteger();
+
+    /**
+     * Completed when the player has stopped after it was terminated.
+     */
+    private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+
+    /**
+     * The state of a player run as tasks (used by its steps only): the claim waiting for a verdict, the countdown of
+     * a penalty and the presses of a computer player (null for a human player).
+     */
+    private CompletableFuture<Verdict> claim;
+    private long penaltyTicks;
+    private Random aiRandom;
+
+    /**
+     * Set by the timers of a player run as tasks: the current part of a freeze has ended, and a computer player has
+     * a step with presses scheduled.
+     */
+    private volatile boolean thawed;
+    private final AtomicBoolean pressesScheduled = new AtomicBoolean();
+
+    /**
+     * The time a computer player run as tasks takes to press the keys of one step. Like anyone's presses, they take
+     * time, so a game on a virtual clock keeps moving while the computer players press.
+     */
+    private static final long COMPUTER_PRESS_MILLIS = 1;
+
     /**
      * True iff the player is human (not a computer player).
      */
@@ -54,19 +97,17 @@ public class Player implements Runnable {
      */
     private int score;
 
-    /*the tokens that are currently on the table by this player */
-    protected int[][] tokensOnTable={{-1,-1,-1},
-                                    {-1,-1,-1}};
+    /**
+     * The number of penalties the player got.
+     */
+    private int penalties;
 
-    /*the number of tokens that are on the table by this player */
-    public int tokensCounter;
-    
     /*waiting presses for this player */
-    private Vector<Integer> playerPresses;
+    private final PressQueue playerPresses;
 
     private final Dealer dealer;
 
-    private boolean available = true;//if the player is available to place tokens (not sleeping)
+    private volatile boolean available = true;//if the player is available to place tokens (not sleeping)
     public int shouldSleep = 0;//0-not sleeping, 1-point sleep, 2-panelty sleep
 
     /**
@@ -79,12 +120,21 @@ public class Player implements Runnable {
      * @param human  - true iff the player is a human player (i.e. input is provided manually, via the keyboard).
      */
     public Player(Env env, Dealer dealer, Table table, int id, boolean human) {
+        this(env, dealer, table, id, human, null);
+    }
+
+    /**
+     * @param executor - runs the steps of the player as tasks, so it needs no thread of its own (null to run the
+     *                 player on its own thread).
+     * @see #Player(Env, Dealer, Table, int, boolean)
+     */
+    public Player(Env env, Dealer dealer, Table table, int id, boolean human, Executor executor) {
         this.env = env;
+        this.executor = executor;
         this.table = table;
         this.id = id;
         this.human = human;
-        this.tokensCounter=0;
-        this.playerPresses=new Vector<Integer>(3);
+        this.playerPresses=new PressQueue(env.config.featureSize, env.config.pressWaitStrategy);
         this.dealer=dealer;
     }
 
@@ -95,18 +145,24 @@ public class Player implements Runnable {
     public void run() {
         playerThread = Thread.currentThread();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + "starting.");
-        if (!human) createArtificialIntelligence();
+        if (!human && !env.config.inlineComputerPlayers) createArtificialIntelligence();
+        Random rand = human || aiThread != null ? null : new Random();
 
         while (!terminate) {
-            while(!playerPresses.isEmpty()&& shouldSleep==0&& !terminate){//execute the oldest press by player
-                int currSlot=playerPresses.remove(0);
-                aiThread.interrupt();
-                tokenAction(currSlot);
+            int currSlot;
+            if(rand!=null){//inline AI: the player thread generates its own presses
+                awaitAvailability();
+                keyPressed(rand.nextInt(env.config.tableSize));
+                currSlot=playerPresses.poll();
             }
+            else
+                currSlot=playerPresses.take();//waits for the oldest press by player
+            if(currSlot>=0 && !terminate)
+                tokenAction(currSlot);
             if(shouldSleep==1)//sleeping because of a point
             {
                 env.ui.setFreeze(id, env.config.pointFreezeMillis);
-                try{Thread.currentThread().sleep(env.config.pointFreezeMillis);}
+                try{env.clock.sleep(env.config.pointFreezeMillis);}
                     catch(InterruptedException ignored){}
                 point();
             }
@@ -115,32 +171,152 @@ public class Player implements Runnable {
             }
             shouldSleep=0;
         }
-        if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
+        if (aiThread != null) try { aiThread.join(); } catch (InterruptedException ignored) {}
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
+    /**
+     * Starts the player: on its own thread, or by queuing its first step on the executor.
+     */
+    public void start() {
+        if (executor != null) {
+            if (!human) aiRandom = new Random();
+            wake();
+            return;
+        }
+        setThread();
+        playerThread.start();
+    }
+
+    /**
+     * Waits until the player has stopped after it was terminated.
+     *
+     * @throws InterruptedException - if the thread is interrupted.
+     */
+    public void join() throws InterruptedException {
+        if (executor == null) {
+            playerThread.join();
+            return;
+        }
+        Thread waiter = Thread.currentThread();
+        stopped.thenRun(() -> env.clock.unpark(waiter));
+        while (!stopped.isDone()) {
+            env.clock.parkUntil(stopped, Long.MAX_VALUE);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Queues a step of the player on the executor, unless a step is already queued or running (then that step is
+     * followed by another one).
+     */
+    private void wake() {
+        if (wakeups.getAndIncrement() == 0)
+            env.clock.execute(executor, this::step);
+    }
+
+    /**
+     * A step of a player run as tasks: does everything the player can do now without waiting, and leaves the rest to
+     * the next wake up (the verdict of a claim, the end of a freeze, a press or the player becoming available).
+     */
+    private void step() {
+        wakeups.set(1);
+        if (!stopped.isDone()) {
+            if (terminate) stop();
+            else act();
+        }
+        if (wakeups.decrementAndGet() > 0)
+            env.clock.execute(executor, this::step);
+    }
+
+    private void act() {
+        if (claim != null) {
+            if (!claim.isDone()) return;
+            Verdict verdict = claim.getNow(Verdict.STALE);
+            claim = null;
+            if (verdict == Verdict.POINT) {
+                shouldSleep = 1;
+                env.ui.setFreeze(id, env.config.pointFreezeMillis);
+                freeze(env.config.pointFreezeMillis);
+            } else if (verdict == Verdict.PENALTY) {
+                shouldSleep = 2;
+                penalties++;
+                penaltyTicks = env.config.penaltyFreezeMillis / 1000;
+                thawed = true;
+            } else
+                setAvailability(true);
+        }
+        if (shouldSleep != 0) {
+            if (!thawed)
+                return;
+            if (shouldSleep == 2 && penaltyTicks > 0) {//the same countdown as penalty()
+                env.ui.setFreeze(id, penaltyTicks * 1000);
+                penaltyTicks--;
+                freeze(900);
+                return;
+            }
+            boolean pointFreeze = shouldSleep == 1;
+            shouldSleep = 0;
+            if (pointFreeze)
+                point();
+            else {
+                env.ui.setFreeze(id, 0);
+                setAvailability(true);
+            }
+        }
+        if (!available)
+            return;
+        if (aiRandom != null)
+            for (int i = 0; i < env.config.featureSize; i++)
+                keyPressed(aiRandom.nextInt(env.config.tableSize));
+        for (int slot = playerPresses.poll(); slot >= 0 && claim == null; slot = playerPresses.poll()) {
+            claim = toggleToken(slot);
+            if (claim != null)
+                claim.thenRun(this::wake);
+        }
+        if (aiRandom != null && claim == null && available && pressesScheduled.compareAndSet(false, true))
+            env.clock.schedule(executor, () -> {
+                pressesScheduled.set(false);
+                wake();
+            }, COMPUTER_PRESS_MILLIS);
+    }
+
+    private void freeze(long millis) {
+        thawed = false;
+        env.clock.schedule(executor, () -> {
+            thawed = true;
+            wake();
+        }, millis);
+    }
+
+    /**
+     * The last step of a player run as tasks. Like a player thread, it still gets the point of its last set.
+     */
+    private void stop() {
+        if (shouldSleep == 1 || claim != null && claim.getNow(Verdict.STALE) == Verdict.POINT)
+            point();
+        shouldSleep = 0;
+        env.logger.log(Level.INFO, "Player " + id + " terminated.");
+        stopped.complete(null);
+    }
+
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses. If the player is not available or the queue of key presses is full, the thread waits until it is.
      */
     private void createArtificialIntelligence() {
         // note: this is a very very smart AI (!)
         Random rand=new Random();
-        aiThread = new Thread(() -> {
+        aiThread = env.threadFactory.newThread(() -> {
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
-                if(playerPresses.size()<3){
-                    int number= rand.nextInt(12);//stimulate key presses
-                    keyPressed(number);
-                }
-                else{
-                    try {
-                        synchronized (this) { wait(); }
-                    } catch (InterruptedException ignored) {}
-                }
+                awaitAvailability();
+                if(playerPresses.awaitSpace())
+                    keyPressed(rand.nextInt(env.config.tableSize));//stimulate key presses
             }
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
+        });
+        aiThread.setName("computer-" + id);
         aiThread.start();
     }
 
@@ -149,6 +325,19 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate=true;
+        playerPresses.close();
+        LockSupport.unpark(aiThread);
+        LockSupport.unpark(playerThread);
+        if (executor != null) wake();
+    }
+
+    /**
+     * Waits until the player is available (not frozen, and the dealer is not between turns). Used by computer players
+     * only, so they stop generating presses that would be ignored.
+     */
+    private void awaitAvailability(){
+        while(!available && !terminate)
+            LockSupport.park(this);//setAvailability(true) unparks the thread that generates the presses
     }
 
     /**
@@ -157,11 +346,10 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        if(table.slotToCard[slot]!=null && available){//legal press and not sleeping
-            if(playerPresses.size()<3){
-                playerPresses.add(slot);
-            }
-        }
+        if(!available || !table.hasCard(slot))//illegal press or sleeping
+            return;
+        if(playerPresses.offer(slot) && executor != null && aiRandom == null)//ignored if there are already enough waiting presses
+            wake();//the next step handles it (a computer player run as tasks handles its own in the step that made them)
     }
 
     /**
@@ -173,79 +361,91 @@ public class Player implements Runnable {
     public void point() {
         score++;
         env.ui.setScore(id, score);
-        env.ui.setFreeze(id, 0);
-        synchronized(this){
-            for (int i = 0; i < tokensOnTable[0].length; i++) {//restting tokens
-                tokensOnTable[0][i]=-1;
-                tokensOnTable[1][i]=-1;
-            }
-            tokensCounter=0;
-        }
+        env.ui.setFreeze(id, 0);//the tokens of the set were removed from the table with its cards
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
-        available = true;
+        setAvailability(true);
     }
 
     /**
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
+        penalties++;
         for(long i = env.config.penaltyFreezeMillis/1000; i>0; i--){
             this.env.ui.setFreeze(id, i*1000);
             try{
-                playerThread.sleep(900);
+                env.clock.sleep(900);
             } catch(InterruptedException e){}
         }
         this.env.ui.setFreeze(id, 0);
-        available = true;
+        setAvailability(true);
     }
 
     public int score() {
         return score;
     }
 
+    public int penalties() {
+        return penalties;
+    }
+
     //remove or places token according to the player press
     public void tokenAction(int slot){
-        boolean tokenExists=false;
-        int empty=-1;
-        for(int i=0;i<tokensOnTable[1].length &&!tokenExists;i++ ){
-            if(tokensOnTable[0][i]==slot){//slot was already pressed so we need to remove it
-                tokenExists=true;
-                tokensOnTable[0][i]=-1;
-                tokensOnTable[1][i]=-1;
-                table.removeToken(id, slot);
-                tokensCounter--;
-                return;
+        CompletableFuture<Verdict> claim = toggleToken(slot);
+        if(claim==null)
+            return;
+        Verdict verdict = awaitVerdict(claim);
+        if(verdict==Verdict.POINT)
+            shouldSleep=1;
+        else if(verdict==Verdict.PENALTY)
+            shouldSleep=2;
+        else
+            setAvailability(true);//a frozen player becomes available when the freeze ends
+    }
+
+    /**
+     * Removes the player's token from a slot if it has one there, and places one otherwise.
+     *
+     * @param slot - the slot pressed.
+     * @return - the verdict of the claim made if the token placed is the last of a set, null if no claim was made.
+     */
+    private CompletableFuture<Verdict> toggleToken(int slot){
+        if(table.removeToken(id, slot))//slot was already pressed so we need to remove it
+            return null;
+        if(table.countTokens(id)==env.config.featureSize)//player tried to put 4th token on table - can happen after illegal set
+            return null;
+        long read=table.readSlot(slot);//the card and the version of the slot, as one snapshot
+        if(Table.cardOf(read)==Table.EMPTY)//the slot was emptied after the key was pressed
+            return null;
+        if(!table.placeToken(id, slot, Table.versionOf(read)))//the card was replaced after it was read
+            return null;
+        if(table.countTokens(id)!=env.config.featureSize)
+            return null;
+        available = false;//annonce a set
+        return dealer.addSet(this);
+    }
+
+    public CompletableFuture<Verdict> callSet(){
+        return dealer.addSet(this);
+    }
+
+    /**
+     * Waits until the dealer has checked a claim of the player.
+     *
+     * @param verdict - the future returned by the dealer for the claim.
+     * @return - the verdict (STALE if the game was terminated first).
+     */
+    private Verdict awaitVerdict(CompletableFuture<Verdict> verdict){
+        while(!terminate){
+            try{
+                return verdict.get();
             }
-            if(tokensOnTable[0][i]==-1){
-                empty=i;
+            catch(InterruptedException ignored){}//woken up for another reason, keep waiting
+            catch(ExecutionException e){
+                return Verdict.STALE;
             }
         }
-        if(!tokenExists){//new token on table
-            if(tokensCounter!=3){//player tried to put 4th token on table - can happen after illegal set
-                tokensOnTable[0][empty]=slot;
-                tokensOnTable[1][empty]=table.slotToCard[slot];
-                tokensCounter++;
-                table.placeToken(id, slot);
-                if(tokensCounter==3){//annonce a set
-                    available = false;
-                    dealer.addSet(this);
-                    while(!dealer.isFree){
-                        try{playerThread.sleep(50);
-                        }
-                          catch(InterruptedException ignored){}
-                    }
-                    dealer.dealerThread.interrupt();
-                    synchronized(this){
-                    try{wait();}catch(InterruptedException ignored){};
-                    }
-                    available = true;
-                }
-             }
-        }
-    }
-
-    public void callSet(){
-        dealer.setCalls.add(this);
+        return verdict.getNow(Verdict.STALE);
     }
 
     public Thread getThread(){
@@ -257,20 +457,17 @@ public class Player implements Runnable {
     }
 
     public void setThread(){
-        playerThread=new Thread(this, "" + id);
-    }
-
-    public void removeAllTokens(){
-        tokensCounter=0;
-        for (int i = 0; i < tokensOnTable[0].length; i++) {
-            tokensOnTable[0][i]=-1;
-            tokensOnTable[1][i]=-1;
-        }
+        playerThread=env.threadFactory.newThread(this);
+        playerThread.setName("" + id);
     }
 
     public void setAvailability(boolean av)
     {
         available = av;
+        if(av && executor != null)
+            wake();
+        else if(av && !human)//wake up the thread that generates the presses (if it is waiting)
+            LockSupport.unpark(aiThread != null ? aiThread : playerThread);
     }
 
     public boolean isHuman(){
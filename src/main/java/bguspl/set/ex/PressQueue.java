@@ -0,0 +1,147 @@
+package bguspl.set.ex;
+
+import bguspl.set.WaitStrategy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The bounded queue of the key presses of a player that wait to be handled: a lock free, allocation free ring buffer
+ * of slot numbers for a single producer (the keyboard thread or the AI thread) and a single consumer (the player
+ * thread). A press that arrives when the queue is full is dropped (and counted), like a key pressed too fast. Both
+ * sides wait for the queue according to a WaitStrategy; a waiting side registers its thread, and the other side
+ * unparks it after publishing.
+ *
+ * @inv 0 <= tail - head <= presses.length
+ */
+public class PressQueue {
+
+    /**
+     * The number of checks of a SPIN_THEN_PARK wait before it blocks.
+     */
+    private static final int SPINS = 1000;
+
+    /**
+     * The presses (the slots pressed): press i is at presses[i % presses.length], for head <= i < tail. Only the
+     * consumer advances head and only the producer advances tail.
+     */
+    private final int[] presses;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The threads waiting for a press and for space (null if none).
+     */
+    private volatile Thread takeWaiter;
+    private volatile Thread spaceWaiter;
+
+    private final WaitStrategy strategy;
+    private volatile boolean closed;
+    private long dropped; // written by the producer only
+
+    /**
+     * @param capacity - the maximum number of waiting presses.
+     * @param strategy - how to wait for a press or for space.
+     */
+    public PressQueue(int capacity, WaitStrategy strategy) {
+        presses = new int[capacity];
+        this.strategy = strategy;
+    }
+
+    /**
+     * Adds a press, unless the queue is full (called by the producer only).
+     *
+     * @param slot - the slot pressed.
+     * @return - true iff the press was added, false if it was dropped.
+     */
+    public boolean offer(int slot) {
+        long t = tail.get();
+        if (closed || t - head.get() == presses.length) {
+            dropped++;
+            return false;
+        }
+        presses[(int) (t % presses.length)] = slot;
+        tail.set(t + 1); // a full fence, so the store is visible before takeWaiter is read
+        LockSupport.unpark(takeWaiter);
+        return true;
+    }
+
+    /**
+     * Removes the oldest press, if there is one (called by the consumer only).
+     *
+     * @return - the slot pressed, or -1 if the queue is empty.
+     */
+    public int poll() {
+        long h = head.get();
+        if (h == tail.get()) return -1;
+        int slot = presses[(int) (h % presses.length)];
+        head.set(h + 1);
+        LockSupport.unpark(spaceWaiter);
+        return slot;
+    }
+
+    /**
+     * Waits for a press and removes it (called by the consumer only).
+     *
+     * @return - the slot pressed, or -1 if the wait ended without one (the queue was closed or the thread interrupted).
+     */
+    public int take() {
+        return await(() -> size() > 0, true) ? poll() : -1;
+    }
+
+    /**
+     * Waits until the queue has room for another press (called by the producer only).
+     *
+     * @return - false if the wait ended without room (the queue was closed or the thread interrupted).
+     */
+    public boolean awaitSpace() {
+        return await(() -> size() < presses.length, false);
+    }
+
+    /**
+     * @return - the number of waiting presses.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @return - the number of presses dropped because the queue was full.
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Ends all current and future waits (when the player terminates).
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(takeWaiter);
+        LockSupport.unpark(spaceWaiter);
+    }
+
+    private boolean await(BooleanSupplier ready, boolean take) {
+        for (int spins = 0; strategy == WaitStrategy.YIELD || strategy == WaitStrategy.SPIN_THEN_PARK && spins < SPINS;
+             ++spins) {
+            if (closed) return false;
+            if (ready.getAsBoolean()) return true;
+            if (strategy == WaitStrategy.YIELD) Thread.yield();
+        }
+
+        // register before checking again, so a press published after the check always unparks this thread
+        if (take) takeWaiter = Thread.currentThread();
+        else spaceWaiter = Thread.currentThread();
+        try {
+            while (!closed && !ready.getAsBoolean()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) return false;
+            }
+            return !closed;
+        } finally {
+            if (take) takeWaiter = null;
+            else spaceWaiter = null;
+        }
+    }
+}
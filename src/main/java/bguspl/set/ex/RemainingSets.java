@@ -0,0 +1,65 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+/**
+ * Tracks the number of legal sets that can still be collected, i.e. the sets among the cards in the deck and on the
+ * table. Moving cards between the deck and the table (dealing and reshuffling) does not change these cards, so the
+ * count only changes when the cards of a collected set leave the game.
+ *
+ * @inv remaining == the number of legal sets among the cards in play (once counted)
+ */
+public class RemainingSets {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The cards in play.
+     */
+    private final Deck inPlay;
+
+    /**
+     * The number of legal sets among the cards in play (-1 until first needed).
+     */
+    private long remaining = -1;
+
+    /**
+     * @param env - the game environment object (all the cards of the deck start in play).
+     */
+    public RemainingSets(Env env) {
+        this.env = env;
+        inPlay = new Deck(env.config.deckSize);
+    }
+
+    /**
+     * Returns the number of sets that can still be collected. The first call counts them, later calls are O(1).
+     *
+     * @return - the number of legal sets among the cards in the deck and on the table.
+     */
+    public long count() {
+        if (remaining < 0)
+            remaining = env.util.countSets(inPlay.toArray(), Integer.MAX_VALUE);
+        return remaining;
+    }
+
+    /**
+     * @return - true iff no legal set can be collected anymore.
+     */
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+
+    /**
+     * Takes a card out of the game (after it was collected in a set).
+     *
+     * @param card - the card id.
+     */
+    public void remove(int card) {
+        if (remaining > 0 && inPlay.contains(card))
+            remaining -= env.util.countSetsContaining(card, inPlay.cards(), inPlay.size());//no copy of the cards
+        inPlay.remove(card);
+    }
+}
@@ -0,0 +1,152 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A live index of the legal sets on the table. The index enumerates every combination of featureSize slots once,
+ * and when the card in a slot changes it re-evaluates only the combinations that contain that slot.
+ *
+ * @inv validCount == the number of combinations of filled slots that form a legal set
+ */
+public class SetIndex {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * The number of cards in a set.
+     */
+    private final int setSize;
+
+    /**
+     * All combinations of setSize slots, in lexicographic order (combination c is at c * setSize ... ).
+     */
+    private final int[] combinations;
+
+    /**
+     * The combinations that contain each slot.
+     */
+    private final int[][] slotCombinations;
+
+    /**
+     * The card in each slot as seen by the index (-1 if none).
+     */
+    private final int[] slotCards;
+
+    /**
+     * A bit per combination, set iff the combination currently holds a legal set.
+     */
+    private final long[] valid;
+    private int validCount;
+
+    private final int[] cards; // reused when testing a combination
+
+    /**
+     * @param env       - the game environment object.
+     * @param tableSize - the number of slots on the table.
+     */
+    public SetIndex(Env env, int tableSize) {
+        this.env = env;
+        setSize = env.config.featureSize;
+        cards = new int[setSize];
+        slotCards = new int[tableSize];
+        Arrays.fill(slotCards, -1);
+
+        int count = tableSize < setSize ? 0 : (int) binomial(tableSize, setSize);
+        combinations = new int[count * setSize];
+        int[] perSlot = new int[tableSize];
+        int[] combination = new int[setSize];
+        for (int i = 0; i < setSize; ++i)
+            combination[i] = i;
+        for (int c = 0; c < count; ++c) {
+            for (int i = 0; i < setSize; ++i) {
+                combinations[c * setSize + i] = combination[i];
+                perSlot[combination[i]]++;
+            }
+
+            // generate next combination in lexicographic order
+            int t = setSize - 1;
+            while (t > 0 && combination[t] == tableSize - setSize + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < setSize; i++) combination[i] = combination[i - 1] + 1;
+        }
+
+        slotCombinations = new int[tableSize][];
+        for (int slot = 0; slot < tableSize; ++slot)
+            slotCombinations[slot] = new int[perSlot[slot]];
+        Arrays.fill(perSlot, 0);
+        for (int c = 0; c < count; ++c)
+            for (int i = 0; i < setSize; ++i) {
+                int slot = combinations[c * setSize + i];
+                slotCombinations[slot][perSlot[slot]++] = c;
+            }
+
+        valid = new long[(count + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    private static long binomial(int n, int k) {
+        long result = 1;
+        for (int i = 1; i <= k; ++i)
+            result = result * (n - k + i) / i;
+        return result;
+    }
+
+    /**
+     * Updates the index after the card in a slot has changed.
+     *
+     * @param slot - the slot that changed.
+     * @param card - the card now in the slot (-1 if the slot is empty).
+     */
+    public synchronized void update(int slot, int card) {
+        if (slotCards[slot] == card) return;
+        slotCards[slot] = card;
+        for (int c : slotCombinations[slot]) {
+            boolean legal = card >= 0 && isLegal(c);
+            boolean wasLegal = (valid[c / Long.SIZE] & (1L << c)) != 0;
+            if (legal != wasLegal) {
+                valid[c / Long.SIZE] ^= 1L << c;
+                validCount += legal ? 1 : -1;
+            }
+        }
+    }
+
+    private boolean isLegal(int combination) {
+        for (int i = 0; i < setSize; ++i) {
+            cards[i] = slotCards[combinations[combination * setSize + i]];
+            if (cards[i] < 0) return false;
+        }
+        return env.util.testSet(cards);
+    }
+
+    /**
+     * @return - true iff there is a legal set on the table.
+     */
+    public synchronized boolean hasSet() {
+        return validCount > 0;
+    }
+
+    /**
+     * @return - the number of legal sets on the table.
+     */
+    public synchronized int countSets() {
+        return validCount;
+    }
+
+    /**
+     * Passes the slots of every legal set on the table (in lexicographic order) to an action.
+     *
+     * @param action - receives a new array with the slots of each set, in increasing order.
+     */
+    public synchronized void forEachSet(Consumer<int[]> action) {
+        for (int w = 0; w < valid.length; ++w)
+            for (long bits = valid[w]; bits != 0; bits &= bits - 1) {
+                int c = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                action.accept(Arrays.copyOfRange(combinations, c * setSize, (c + 1) * setSize));
+            }
+    }
+}
@@ -2,45 +2,124 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * This class contains the data that is visible to the player.
+ * <p>
+ * Every slot has its own lock: the dealer locks only the slots whose cards it changes, and only while it writes them
+ * (never during the table delay or the user interface update). The players read a slot optimistically, without
+ * locking, and retry under the read lock only if a write to the same slot overlapped the read. So key presses never
+ * block behind a reshuffle or behind each other, and never see a card together with the version of another card.
+ * <p>
+ * The table is the only owner of the tokens. A token is placed only if the slot still has the version the player read
+ * with its card, and the tokens of a slot are cleared whenever its card changes, so the tokens on a slot always
+ * refer to the card that is in it. The selection of a player is just its tokens (see slotsOf).
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv cards == the number of slots x with slotToCard[x] != EMPTY
  */
 public class Table {
 
+    /**
+     * The value of an empty slot in slotToCard, and of a card that is not on the table in cardToSlot.
+     */
+    public static final int EMPTY = -1;
+
     /**
      * The game environment object.
      */
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Mapping between a slot and the card placed in it (EMPTY if none).
+     */
+    protected final int[] slotToCard; // card per slot (if any)
+
+    /**
+     * Mapping between a card and the slot it is in (EMPTY if none).
+     */
+    protected final int[] cardToSlot; // slot per card (if any)
+
+    /**
+     * The number of cards on the table.
+     */
+    private final AtomicInteger cards = new AtomicInteger();
+
+    /**
+     * The legal sets currently on the table (kept up to date by placeCard and removeCard).
+     */
+    private final SetIndex setIndex;
+
+    /**
+     * The tokens of the players on the table (its monitor is also held while the events of the table are queued).
+     */
+    private final TokenBoard tokens;
+
+    /**
+     * The version of each slot: increased after every card placed on the slot or removed from it.
+     */
+    private final AtomicIntegerArray slotVersions;
+
+    /**
+     * The changes of the table, published to the registered listeners.
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    private final TableEvents events;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * The number of times the whole layout was dealt or cleared.
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    private final AtomicInteger epoch = new AtomicInteger();
+
+    /**
+     * The lock of each slot, held for writing while the card in the slot and its version are changed.
+     */
+    private final StampedLock[] slotLocks;
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (EMPTY if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (EMPTY if none).
+     */
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
+
+        this(env, slotToCard, cardToSlot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for testing.
+     *
+     * @param env              - the game environment objects.
+     * @param slotToCard       - mapping between a slot and the card placed in it (EMPTY if none).
+     * @param cardToSlot       - mapping between a card and the slot it is in (EMPTY if none).
+     * @param listenerExecutor - runs the delivery of the table events to the listeners.
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot, Executor listenerExecutor) {
 
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
+        setIndex = new SetIndex(env, slotToCard.length);
+        tokens = new TokenBoard(env.config.players, slotToCard.length);
+        slotVersions = new AtomicIntegerArray(slotToCard.length);
+        events = new TableEvents(env, listenerExecutor);
+        slotLocks = new StampedLock[slotToCard.length];
+        for (int slot = 0; slot < slotToCard.length; ++slot)
+            slotLocks[slot] = new StampedLock();
+        for (int slot = 0; slot < slotToCard.length; ++slot)
+            if (slotToCard[slot] != EMPTY) {
+                setIndex.update(slot, slotToCard[slot]);
+                cards.incrementAndGet();
+            }
     }
 
     /**
@@ -50,33 +129,79 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for actual usage.
+     *
+     * @param env              - the game environment objects.
+     * @param listenerExecutor - runs the delivery of the table events to the listeners.
+     */
+    public Table(Env env, Executor listenerExecutor) {
+
+        this(env, emptyArray(env.config.tableSize), emptyArray(env.config.deckSize), listenerExecutor);
+    }
+
+    private static int[] emptyArray(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, EMPTY);
+        return array;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        setIndex.forEachSet(slots -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
+            int[] set = Arrays.stream(slots).map(this::cardAt).sorted().toArray();
             int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+            System.out.println(sb.append("slots: ").append(Arrays.toString(slots)).append(" features: ").append(Arrays.deepToString(features)));
         });
     }
 
+    /**
+     * Checks if there is a legal set among the cards on the table.
+     *
+     * @return - true iff there is at least one legal set on the table.
+     */
+    public boolean hasSet() {
+        return setIndex.hasSet();
+    }
+
+    /**
+     * Count the number of legal sets currently on the table.
+     *
+     * @return - the number of legal sets on the table.
+     */
+    public int countSets() {
+        return setIndex.countSets();
+    }
+
     /**
      * Count the number of cards currently on the table.
      *
      * @return - the number of cards on the table.
      */
     public int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
-        return cards;
+        return cards.get();
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return     - the card in the slot (EMPTY if none).
+     */
+    public int cardAt(int slot) {
+        return cardOf(readSlot(slot));
+    }
+
+    /**
+     * @param card - the card id.
+     * @return     - the slot the card is in (EMPTY if it is not on the table).
+     */
+    public int slotOf(int card) {
+        return cardToSlot[card];
     }
 
     /**
@@ -88,12 +213,23 @@ public class Table {
      */
     public void placeCard(int card, int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        boolean cleared;
+        long stamp = slotLocks[slot].writeLock();
+        try {
+            synchronized (tokens) {
+                List<TableEvent> batch = newBatch();
+                cleared = changeCard(slot, card, batch);
+                publish(batch);
+            }
+        } finally {
+            slotLocks[slot].unlockWrite(stamp);
+        }
+        setIndex.update(slot, card);
 
+        if (cleared) env.ui.removeTokens(slot);
         env.ui.placeCard(card, slot);
     }
 
@@ -103,19 +239,261 @@ public class Table {
      */
     public void removeCard(int slot) {
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
+        boolean cleared;
+        long stamp = slotLocks[slot].writeLock();
+        try {
+            synchronized (tokens) {
+                List<TableEvent> batch = newBatch();
+                cleared = changeCard(slot, EMPTY, batch);
+                publish(batch);
+            }
+        } finally {
+            slotLocks[slot].unlockWrite(stamp);
+        }
+        setIndex.update(slot, -1);
+        if (cleared) env.ui.removeTokens(slot);
         env.ui.removeCard(slot);
     }
 
+    /**
+     * Places cards on the table in several grid slots, as a single operation: one delay and one user interface update.
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed (respectively).
+     *
+     * @post - the cards placed are on the table, in the assigned slots.
+     */
+    public void placeCards(int[] cards, int[] slots) {
+        if (slots.length == 0) return;
+        try {
+            env.clock.sleep(env.config.tableDelayMillis);
+        } catch (InterruptedException ignored) {}
+
+        boolean[] cleared = changeLayout(slots, cards);
+        for (int i = 0; i < slots.length; ++i) {
+            setIndex.update(slots[i], cards[i]);
+            if (cleared[i]) env.ui.removeTokens(slots[i]);
+        }
+
+        env.ui.placeCards(cards, slots);
+    }
+
+    /**
+     * Removes the cards from several grid slots on the table, as a single operation: one delay and one user interface
+     * update.
+     * @param slots - the slots from which to remove the cards.
+     */
+    public void removeCards(int[] slots) {
+        if (slots.length == 0) return;
+        try {
+            env.clock.sleep(env.config.tableDelayMillis);
+        } catch (InterruptedException ignored) {}
+
+        boolean[] cleared = changeLayout(slots, null);
+        for (int i = 0; i < slots.length; ++i) {
+            setIndex.update(slots[i], -1);
+            if (cleared[i]) env.ui.removeTokens(slots[i]);
+        }
+
+        env.ui.removeCards(slots);
+    }
+
+    /**
+     * Changes the cards of several slots at once, as a new layout epoch.
+     * @param slots - the slots.
+     * @param cards - the card ids to place in the slots (respectively), null to empty them.
+     * @return      - for each slot, true iff any token was cleared from it.
+     */
+    private boolean[] changeLayout(int[] slots, int[] cards) {
+        boolean[] cleared = new boolean[slots.length];
+        long[] stamps = lockSlots(slots);
+        try {
+            synchronized (tokens) {
+                int epoch = this.epoch.incrementAndGet();
+                List<TableEvent> batch = newBatch();
+                if (batch != null) batch.add(new TableEvent(TableEvent.Type.LAYOUT, EMPTY, epoch));
+                for (int i = 0; i < slots.length; ++i)
+                    cleared[i] = changeCard(slots[i], cards == null ? EMPTY : cards[i], batch);
+                publish(batch);
+            }
+        } finally {
+            unlockSlots(slots, stamps);
+        }
+        return cleared;
+    }
+
+    /**
+     * Changes the card in a slot and clears the tokens on the card it replaces, and adds the events of both to a
+     * batch. Called with the slot locked for writing and the tokens locked, so that the events of the table are
+     * queued in the same order as its changes.
+     * @param slot  - the slot.
+     * @param card  - the card id to place in the slot (EMPTY to empty it).
+     * @param batch - collects the events (null if there are no listeners).
+     * @return      - true iff any token was cleared.
+     */
+    private boolean changeCard(int slot, int card, List<TableEvent> batch) {
+        int old = setCard(slot, card);
+        boolean cleared = old != EMPTY && tokens.clear(slot);
+        if (batch != null) {
+            if (old != EMPTY) batch.add(new TableEvent(TableEvent.Type.CARD_REMOVED, slot, old));
+            if (cleared) batch.add(new TableEvent(TableEvent.Type.TOKENS_CLEARED, slot, EMPTY));
+            if (card != EMPTY) batch.add(new TableEvent(TableEvent.Type.CARD_PLACED, slot, card));
+        }
+        return cleared;
+    }
+
+    /**
+     * @return - a new batch of events, or null if there are no listeners to publish it to.
+     */
+    private List<TableEvent> newBatch() {
+        return events.hasListeners() ? new ArrayList<>() : null;
+    }
+
+    private void publish(List<TableEvent> batch) {
+        if (batch != null && !batch.isEmpty())
+            events.publish(batch.toArray(new TableEvent[0]));
+    }
+
+    /**
+     * Changes the card in a slot, keeping both mappings and the card count consistent, and moves the slot to its
+     * next version.
+     * @param slot - the slot (locked for writing).
+     * @param card - the card id to place in the slot (EMPTY to empty it).
+     * @return     - the card that was in the slot (EMPTY if none).
+     */
+    private int setCard(int slot, int card) {
+        int old = slotToCard[slot];
+        if (old != EMPTY)
+            cardToSlot[old] = EMPTY;
+        if (card != EMPTY)
+            cardToSlot[card] = slot;
+        slotToCard[slot] = card;
+        if (old == EMPTY && card != EMPTY) cards.incrementAndGet();
+        else if (old != EMPTY && card == EMPTY) cards.decrementAndGet();
+        slotVersions.incrementAndGet(slot);
+        return old;
+    }
+
+    /**
+     * Locks several slots for writing, in increasing slot order (so writers of overlapping slots cannot deadlock).
+     * @param slots - the slots (distinct).
+     * @return      - the stamp of the lock of each slot (respectively).
+     */
+    private long[] lockSlots(int[] slots) {
+        int[] order = slots.clone();
+        Arrays.sort(order);
+        long[] stamps = new long[slotLocks.length];
+        for (int slot : order)
+            stamps[slot] = slotLocks[slot].writeLock();
+        long[] result = new long[slots.length];
+        for (int i = 0; i < slots.length; ++i)
+            result[i] = stamps[slots[i]];
+        return result;
+    }
+
+    private void unlockSlots(int[] slots, long[] stamps) {
+        for (int i = 0; i < slots.length; ++i)
+            slotLocks[slots[i]].unlockWrite(stamps[i]);
+    }
+
+    /**
+     * Reads the card in a slot together with the version of the slot, as a single consistent snapshot. The read is
+     * optimistic and lock free, it takes the read lock only if a write to the slot overlapped it.
+     * @param slot - the slot.
+     * @return     - the version of the slot in the high 32 bits and the card in the low 32 bits (see cardOf and
+     *               versionOf).
+     */
+    public long readSlot(int slot) {
+        StampedLock slotLock = slotLocks[slot];
+        long stamp = slotLock.tryOptimisticRead();
+        long read = pack(slotVersions.get(slot), slotToCard[slot]);
+        if (slotLock.validate(stamp)) return read;
+
+        stamp = slotLock.readLock();
+        try {
+            return pack(slotVersions.get(slot), slotToCard[slot]);
+        } finally {
+            slotLock.unlockRead(stamp);
+        }
+    }
+
+    private static long pack(int version, int card) {
+        return (long) version << 32 | card & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param read - a snapshot returned by readSlot.
+     * @return     - the card in the slot (EMPTY if none).
+     */
+    public static int cardOf(long read) {
+        return (int) read;
+    }
+
+    /**
+     * @param read - a snapshot returned by readSlot.
+     * @return     - the version of the slot (see slotVersion).
+     */
+    public static int versionOf(long read) {
+        return (int) (read >>> 32);
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return     - true iff there is a card in the slot (read lock free, see readSlot).
+     */
+    public boolean hasCard(int slot) {
+        return cardAt(slot) != EMPTY;
+    }
+
+    /**
+     * Returns the version of a slot (to read it together with the card in the slot, use readSlot).
+     * @param slot - the slot.
+     * @return     - the version of the slot, increased after every card placed on it or removed from it.
+     */
+    public int slotVersion(int slot) {
+        return slotVersions.get(slot);
+    }
+
+    /**
+     * @param slots - the slots.
+     * @return      - the sum of the versions of the slots. Versions only increase, so the sum of the versions read
+     *                earlier is equal to it iff no card was placed on any of the slots or removed from it since.
+     */
+    public long versionSum(int[] slots) {
+        long sum = 0;
+        for (int slot : slots)
+            sum += slotVersions.get(slot);
+        return sum;
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
     public void placeToken(int player, int slot) {
+        placeToken(player, slot, slotVersions.get(slot));
+    }
+
+    /**
+     * Places a player token on a grid slot, if the card in the slot was not changed since the player read it.
+     * @param player  - the player the token belongs to.
+     * @param slot    - the slot on which to place the token.
+     * @param version - the version of the slot read together with the card (see readSlot).
+     * @return        - true iff the token was placed.
+     */
+    public boolean placeToken(int player, int slot, int version) {
+        synchronized (tokens) {
+            // a card change moves the version before it clears the tokens of the slot, so a token placed here is
+            // either cleared with the old card or rejected
+            if (slotVersions.get(slot) != version || !tokens.place(player, slot)) return false;
+            if (events.hasListeners())
+                events.publish(new TableEvent(TableEvent.Type.TOKEN_PLACED, slot, player));
+        }
         env.ui.placeToken(player, slot);
+        return true;
     }
 
     /**
@@ -125,7 +503,65 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
+        synchronized (tokens) {
+            if (!tokens.remove(player, slot)) return false;
+            if (events.hasListeners())
+                events.publish(new TableEvent(TableEvent.Type.TOKEN_REMOVED, slot, player));
+        }
         env.ui.removeToken(player, slot);
         return true;
     }
+
+    /**
+     * Removes all the tokens from the table.
+     */
+    public void removeAllTokens() {
+        synchronized (tokens) {
+            tokens.clear();
+            if (events.hasListeners())
+                events.publish(new TableEvent(TableEvent.Type.TOKENS_CLEARED, EMPTY, EMPTY));
+        }
+        env.ui.removeTokens();
+    }
+
+    /**
+     * Registers a listener for the changes of the table. The changes are delivered asynchronously, in batches (see
+     * TableListener), so the threads that change the table never wait for the listeners. Every event is queued while
+     * the tokens are locked, together with the change it describes, so replaying the events in the order they are
+     * delivered rebuilds the state of the table.
+     * @param listener - receives the changes from now on.
+     */
+    public void addListener(TableListener listener) {
+        events.addListener(listener);
+    }
+
+    /**
+     * @param listener - a listener that should no longer receive the changes of the table.
+     */
+    public void removeListener(TableListener listener) {
+        events.removeListener(listener);
+    }
+
+    /**
+     * @return - the number of times the whole layout was dealt or cleared (see TableEvent.Type.LAYOUT).
+     */
+    public int layoutEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * @param player - the player.
+     * @return       - the number of tokens the player has on the table.
+     */
+    public int countTokens(int player) {
+        return tokens.count(player);
+    }
+
+    /**
+     * @param player - the player.
+     * @return       - the slots the player has tokens on (its current selection), in increasing order.
+     */
+    public int[] slotsOf(int player) {
+        return tokens.slotsOf(player);
+    }
 }
\ No newline at end of file
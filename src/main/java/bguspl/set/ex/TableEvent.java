@@ -0,0 +1,71 @@
+package bguspl.set.ex;
+
+/**
+ * A change of the table, as published to the table listeners (see TableListener).
+ */
+public final class TableEvent {
+
+    /**
+     * The kinds of changes.
+     */
+    public enum Type {
+
+        /**
+         * A card was placed in a slot (value is the card).
+         */
+        CARD_PLACED,
+
+        /**
+         * A card was removed from a slot (value is the card).
+         */
+        CARD_REMOVED,
+
+        /**
+         * A player placed a token on a slot (value is the player).
+         */
+        TOKEN_PLACED,
+
+        /**
+         * A player removed its token from a slot (value is the player).
+         */
+        TOKEN_REMOVED,
+
+        /**
+         * The tokens of all the players were removed from a slot, or from all the slots if slot is Table.EMPTY.
+         */
+        TOKENS_CLEARED,
+
+        /**
+         * The whole layout was dealt or cleared at once, as described by the events that follow it in the same batch
+         * (slot is Table.EMPTY, value is the new layout epoch).
+         */
+        LAYOUT
+    }
+
+    public final Type type;
+    public final int slot;
+    public final int value;
+
+    public TableEvent(Type type, int slot, int value) {
+        this.type = type;
+        this.slot = slot;
+        this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TableEvent)) return false;
+        TableEvent event = (TableEvent) o;
+        return type == event.type && slot == event.slot && value == event.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return (type.hashCode() * 31 + slot) * 31 + value;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + slot + ", " + value + ")";
+    }
+}
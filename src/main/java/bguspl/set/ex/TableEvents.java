@@ -0,0 +1,106 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * The stream of the changes of a table. Publishing never blocks: the events are queued, and a single dispatch task at
+ * a time drains the queue and delivers everything published so far to every listener as one batch. Nothing is queued
+ * while there are no listeners.
+ */
+public class TableEvents {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * Runs the dispatch tasks (through the game clock, so a virtual clock waits for them).
+     */
+    private final Executor executor;
+
+    private final List<TableListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The batches of events published and not yet delivered.
+     */
+    private final Queue<TableEvent[]> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * True while a dispatch task is scheduled or running.
+     */
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    /**
+     * @param env      - the game environment object.
+     * @param executor - runs the dispatch tasks.
+     */
+    public TableEvents(Env env, Executor executor) {
+        this.env = env;
+        this.executor = executor;
+    }
+
+    /**
+     * @param listener - receives the events published from now on.
+     */
+    public void addListener(TableListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener - a listener that should no longer receive events.
+     */
+    public void removeListener(TableListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return - true iff some listener is registered (so there is any point in creating events).
+     */
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Publishes events, to be delivered together.
+     *
+     * @param events - the events, in order.
+     */
+    public void publish(TableEvent... events) {
+        if (!hasListeners()) return;
+        pending.add(events);
+        if (dispatching.compareAndSet(false, true))
+            env.clock.execute(executor, this::dispatch);
+    }
+
+    private void dispatch() {
+        List<TableEvent> batch = new ArrayList<>();
+        do {
+            for (TableEvent[] events; (events = pending.poll()) != null; )
+                Collections.addAll(batch, events);
+            if (!batch.isEmpty()) {
+                List<TableEvent> events = Collections.unmodifiableList(batch);
+                for (TableListener listener : listeners) {
+                    try {
+                        listener.tableChanged(events);
+                    } catch (RuntimeException e) {
+                        env.logger.log(Level.WARNING, "table listener failed", e);
+                    }
+                }
+                batch.clear();
+            }
+            dispatching.set(false);
+            // an event published after the queue was drained and before the flag was cleared found a dispatch running
+        } while (!pending.isEmpty() && dispatching.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,19 @@
+package bguspl.set.ex;
+
+import java.util.List;
+
+/**
+ * Receives the changes of the table (see Table.addListener).
+ */
+@FunctionalInterface
+public interface TableListener {
+
+    /**
+     * Called with a batch of changes of the table, in the order they were published. Batches are delivered by a
+     * single dispatch task at a time, never on the thread that changed the table, so a listener must not block for
+     * long but needs no synchronization of its own.
+     *
+     * @param events - the changes (the list must not be kept after the call).
+     */
+    void tableChanged(List<TableEvent> events);
+}
@@ -0,0 +1,121 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+
+/**
+ * The tokens on the table as two bitboards: the slots of every player and the players of every slot. Finding the
+ * slots of a player and clearing the tokens of a slot take a few word operations, whatever the number of players.
+ *
+ * @inv the bit of slot s of player p is set iff the bit of player p of slot s is set
+ */
+public class TokenBoard {
+
+    /**
+     * The number of long words per player (a bit per slot) and per slot (a bit per player).
+     */
+    private final int slotWords;
+    private final int playerWords;
+
+    /**
+     * The slots of player p are at p * slotWords ..., the players of slot s are at s * playerWords ...
+     */
+    private final long[] playerSlots;
+    private final long[] slotPlayers;
+
+    /**
+     * @param players   - the number of players.
+     * @param tableSize - the number of slots on the table.
+     */
+    public TokenBoard(int players, int tableSize) {
+        slotWords = (tableSize + Long.SIZE - 1) / Long.SIZE;
+        playerWords = (players + Long.SIZE - 1) / Long.SIZE;
+        playerSlots = new long[players * slotWords];
+        slotPlayers = new long[tableSize * playerWords];
+    }
+
+    /**
+     * Places a token.
+     *
+     * @return - false iff the player already had a token on the slot.
+     */
+    public synchronized boolean place(int player, int slot) {
+        if (has(player, slot)) return false;
+        playerSlots[player * slotWords + slot / Long.SIZE] |= 1L << slot;
+        slotPlayers[slot * playerWords + player / Long.SIZE] |= 1L << player;
+        return true;
+    }
+
+    /**
+     * Removes a token.
+     *
+     * @return - true iff the player had a token on the slot.
+     */
+    public synchronized boolean remove(int player, int slot) {
+        if (!has(player, slot)) return false;
+        playerSlots[player * slotWords + slot / Long.SIZE] &= ~(1L << slot);
+        slotPlayers[slot * playerWords + player / Long.SIZE] &= ~(1L << player);
+        return true;
+    }
+
+    /**
+     * @return - true iff the player has a token on the slot.
+     */
+    public synchronized boolean has(int player, int slot) {
+        return (playerSlots[player * slotWords + slot / Long.SIZE] & (1L << slot)) != 0;
+    }
+
+    /**
+     * @return - the number of tokens of the player.
+     */
+    public synchronized int count(int player) {
+        int count = 0;
+        for (int w = 0; w < slotWords; ++w)
+            count += Long.bitCount(playerSlots[player * slotWords + w]);
+        return count;
+    }
+
+    /**
+     * @return - the slots the player has tokens on, in increasing order.
+     */
+    public synchronized int[] slotsOf(int player) {
+        return bits(playerSlots, player * slotWords, slotWords);
+    }
+
+    /**
+     * Removes the tokens of all the players from a slot.
+     *
+     * @return - true iff there was any token on the slot.
+     */
+    public synchronized boolean clear(int slot) {
+        boolean any = false;
+        for (int w = 0; w < playerWords; ++w) {
+            any |= slotPlayers[slot * playerWords + w] != 0;
+            for (long bits = slotPlayers[slot * playerWords + w]; bits != 0; bits &= bits - 1) {
+                int player = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                playerSlots[player * slotWords + slot / Long.SIZE] &= ~(1L << slot);
+            }
+            slotPlayers[slot * playerWords + w] = 0;
+        }
+        return any;
+    }
+
+    /**
+     * Removes all the tokens.
+     */
+    public synchronized void clear() {
+        Arrays.fill(playerSlots, 0);
+        Arrays.fill(slotPlayers, 0);
+    }
+
+    private static int[] bits(long[] words, int from, int count) {
+        int size = 0;
+        for (int w = 0; w < count; ++w)
+            size += Long.bitCount(words[from + w]);
+        int[] bits = new int[size];
+        int i = 0;
+        for (int w = 0; w < count; ++w)
+            for (long word = words[from + w]; word != 0; word &= word - 1)
+                bits[i++] = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+        return bits;
+    }
+}
@@ -0,0 +1,22 @@
+package bguspl.set.ex;
+
+/**
+ * The result of the dealer checking a claim.
+ */
+public enum Verdict {
+
+    /**
+     * The cards form a legal set: the player gets a point.
+     */
+    POINT,
+
+    /**
+     * The cards do not form a legal set: the player is penalized.
+     */
+    PENALTY,
+
+    /**
+     * Some of the cards left the table before the claim was checked: the player keeps its other tokens and goes on.
+     */
+    STALE
+}
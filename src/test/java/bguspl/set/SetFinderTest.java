@@ -0,0 +1,87 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SetFinderTest {
+
+    private static UtilImpl util(int featureSize, int featureCount, int parallelism) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("FindSetsParallelism", Integer.toString(parallelism));
+        properties.put("FindSetsParallelThreshold", "10");
+        return new UtilImpl(new Config(new MockLogger(), properties));
+    }
+
+    private static List<String> sets(Util util, int[] cards, int count) {
+        List<String> sets = new ArrayList<>();
+        util.forEachSet(cards, count, set -> sets.add(Arrays.toString(set)));
+        return sets;
+    }
+
+    private static int[] randomCards(Random random, int deckSize, int length) {
+        List<Integer> deck = IntStream.range(0, deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+        return deck.subList(0, length).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void parallel_SameAsSequential() {
+        int[][] geometries = {{3, 4}, {4, 3}};
+        for (int[] geometry : geometries) {
+            UtilImpl sequential = util(geometry[0], geometry[1], 1);
+            UtilImpl parallel = util(geometry[0], geometry[1], 4);
+            int deckSize = (int) Math.pow(geometry[0], geometry[1]);
+            Random random = new Random(deckSize);
+
+            for (int length : new int[]{10, 12, 20, 40, deckSize}) {
+                for (int i = 0; i < 10; ++i) {
+                    int[] cards = randomCards(random, deckSize, length);
+                    assertEquals(sets(sequential, cards, Integer.MAX_VALUE), sets(parallel, cards, Integer.MAX_VALUE));
+                    assertEquals(sequential.countSets(cards, Integer.MAX_VALUE),
+                            parallel.countSets(cards, Integer.MAX_VALUE));
+                    assertEquals(sequential.countSets(cards, 3), parallel.countSets(cards, 3));
+                    assertEquals(sequential.containsSet(cards), parallel.containsSet(cards));
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallel_StopsAtTheFirstSets() {
+        UtilImpl sequential = util(3, 4, 1);
+        UtilImpl parallel = util(3, 4, 4);
+        int[] cards = randomCards(new Random(3), 81, 81);
+
+        // the first count sets, in the order of a sequential search
+        for (int count : new int[]{1, 2, 5}) {
+            List<String> expected = sets(sequential, cards, count);
+            assertEquals(count, expected.size());
+            assertEquals(expected, sets(parallel, cards, count));
+            assertEquals(count, parallel.countSets(cards, count));
+        }
+
+        // a consumer that stops the search gets no more sets
+        List<String> received = new ArrayList<>();
+        parallel.forEachSet(cards, Integer.MAX_VALUE, set -> received.add(Arrays.toString(set)) && received.size() < 2);
+        assertEquals(sets(sequential, cards, 2), received);
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
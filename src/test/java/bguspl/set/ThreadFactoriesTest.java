@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ThreadFactoriesTest {
+
+    private static ThreadFactory factory(boolean virtualThreads) {
+        Properties properties = new Properties();
+        properties.put("VirtualThreads", Boolean.toString(virtualThreads));
+        Logger logger = new MockLogger();
+        return ThreadFactories.create(new Config(logger, properties), logger);
+    }
+
+    /**
+     * @return - the major version of the running Java (8 for "1.8").
+     */
+    private static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        return javaVersion() >= 21 && (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    void create_VirtualThreadsOnJava21() throws Exception {
+        assumeTrue(javaVersion() >= 21);
+
+        AtomicBoolean ran = new AtomicBoolean();
+        Thread thread = factory(true).newThread(() -> ran.set(true));
+        thread.start();
+        thread.join();
+
+        assertTrue(isVirtual(thread));
+        assertTrue(ran.get());
+    }
+
+    @Test
+    void create_PlatformThreadsOtherwise() throws Exception {
+        assertFalse(isVirtual(factory(false).newThread(() -> {})));
+        if (javaVersion() < 21) // the fallback of an older JVM
+            assertFalse(isVirtual(factory(true).newThread(() -> {})));
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
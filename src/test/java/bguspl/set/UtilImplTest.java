@@ -0,0 +1,155 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    /**
+     * The feature sizes and feature counts tested: the completion table path (feature size 3) and the packed path.
+     */
+    private static final int[][] GEOMETRIES = {{3, 4}, {4, 3}, {5, 3}};
+
+    private static Config config(int featureSize, int featureCount, Properties properties) {
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(new MockLogger(), properties);
+    }
+
+    /**
+     * The reference check: feature by feature, all the cards share the value or all the values differ.
+     */
+    private static boolean bruteForceIsSet(Config config, int[] cards) {
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= config.featureSize) {
+            boolean sameSame = true, butDifferent = true;
+            for (int j = 0; j < cards.length; ++j)
+                for (int k = j + 1; k < cards.length; ++k) {
+                    boolean same = cards[j] / weight % config.featureSize == cards[k] / weight % config.featureSize;
+                    sameSame &= same;
+                    butDifferent &= !same;
+                }
+            if (sameSame == butDifferent) return false;
+        }
+        return true;
+    }
+
+    /**
+     * The reference search: every combination of featureSize cards, in lexicographic order.
+     */
+    private static List<String> bruteForceFindSets(Config config, int[] cards) {
+        List<String> sets = new ArrayList<>();
+        int r = config.featureSize;
+        int[] combination = IntStream.range(0, r).toArray();
+        int[] set = new int[r];
+        while (combination[r - 1] < cards.length) {
+            for (int i = 0; i < r; ++i)
+                set[i] = cards[combination[i]];
+            if (bruteForceIsSet(config, set)) sets.add(sorted(set));
+            int t = r - 1;
+            while (t != 0 && combination[t] == cards.length - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+        Collections.sort(sets);
+        return sets;
+    }
+
+    private static String sorted(int[] set) {
+        int[] copy = set.clone();
+        Arrays.sort(copy);
+        return Arrays.toString(copy);
+    }
+
+    private static int[] randomCards(Random random, int deckSize, int length) {
+        List<Integer> deck = IntStream.range(0, deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, random);
+        return deck.subList(0, Math.min(length, deckSize)).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void testSet_SameAsTheFeatureLoop() {
+        for (int[] geometry : GEOMETRIES)
+            testSet_SameAsTheFeatureLoop(geometry[0], geometry[1]);
+    }
+
+    private void testSet_SameAsTheFeatureLoop(int featureSize, int featureCount) {
+        Config config = config(featureSize, featureCount, new Properties());
+        UtilImpl util = new UtilImpl(config);
+        PackedCards packed = new PackedCards(config);
+        Random random = new Random(featureSize * 10 + featureCount);
+
+        for (int i = 0; i < 20000; ++i) {
+            // featureSize cards take the completion table (feature size 3) or the packed check, any other number of
+            // cards takes the feature matrix
+            int length = i % 4 == 0 ? featureSize + 1 : featureSize;
+            int[] cards = randomCards(random, config.deckSize, length);
+            boolean expected = bruteForceIsSet(config, cards);
+            assertEquals(expected, util.testSet(cards), Arrays.toString(cards));
+            if (length == featureSize)
+                assertEquals(expected, packed.isSet(cards), Arrays.toString(cards));
+        }
+    }
+
+    @Test
+    void findSets_SameAsTheFeatureLoop() {
+        for (int[] geometry : GEOMETRIES)
+            findSets_SameAsTheFeatureLoop(geometry[0], geometry[1]);
+    }
+
+    private void findSets_SameAsTheFeatureLoop(int featureSize, int featureCount) {
+        Config config = config(featureSize, featureCount, new Properties());
+        UtilImpl util = new UtilImpl(config);
+        Random random = new Random(featureSize * 10 + featureCount);
+
+        for (int i = 0; i < 5; ++i) {
+            int[] cards = randomCards(random, config.deckSize, featureSize == 3 ? config.deckSize : 24);
+            List<Integer> deck = Arrays.stream(cards).boxed().collect(Collectors.toList());
+            List<String> found = util.findSets(deck, Integer.MAX_VALUE).stream()
+                    .map(UtilImplTest::sorted).sorted().collect(Collectors.toList());
+            assertEquals(bruteForceFindSets(config, cards), found);
+        }
+    }
+
+    @Test
+    void completionTables_SameAsTheFeatureLoop(@TempDir File cache) {
+        Properties properties = new Properties();
+        properties.put("CompletionTableMaxHeapKB", "0");
+        properties.put("CompletionTableDirectory", cache.getPath());
+        Config config = config(3, 4, properties);
+        List<SetCompletionTable> tables = Arrays.asList(
+                new SetCompletionTable.Heap(config.featureCount, config.deckSize),
+                SetCompletionTable.create(config), // mapped, as the heap is too small
+                SetCompletionTable.create(config), // mapped again, from the file written by the first
+                new SetCompletionTable.Computed(config.featureCount, config.deckSize));
+        assertTrue(tables.get(1) instanceof SetCompletionTable.Mapped);
+
+        for (int first = 0; first < config.deckSize; ++first)
+            for (int second = 0; second < config.deckSize; ++second)
+                if (first != second)
+                    for (SetCompletionTable table : tables) {
+                        int third = table.complete(first, second);
+                        assertTrue(bruteForceIsSet(config, new int[]{first, second, third}),
+                                table.getClass().getSimpleName() + " " + first + " " + second);
+                    }
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -2,11 +2,13 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.SetConsumer;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -17,8 +19,8 @@ class DealerTest {
 
     Table table;
     Dealer dealer;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private int[] slotToCard;
+    private int[] cardToSlot;
     private Player p1;
 
     @BeforeEach
@@ -34,8 +36,10 @@ class DealerTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.EMPTY);
+        Arrays.fill(cardToSlot, Table.EMPTY);
         Player[] players = new Player[1];
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
@@ -67,6 +71,10 @@ class DealerTest {
         @Override
         public void removeCard(int slot) {}
         @Override
+        public void placeCards(int[] cards, int[] slots) {}
+        @Override
+        public void removeCards(int[] slots) {}
+        @Override
         public void setCountdown(long millies, boolean warn) {}
         @Override
         public void setElapsed(long millies) {}
@@ -107,6 +115,24 @@ class DealerTest {
             return null;
         }
 
+        @Override
+        public void forEachSet(int[] cards, int count, SetConsumer consumer) {}
+
+        @Override
+        public int countSets(int[] cards, int count) {
+            return 0;
+        }
+
+        @Override
+        public boolean containsSet(int[] cards) {
+            return false;
+        }
+
+        @Override
+        public int countSetsContaining(int card, int[] cards) {
+            return 0;
+        }
+
         @Override
         public void spin() {}
     }
@@ -0,0 +1,87 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    Deck deck;
+
+    void assertInvariants() {
+        int[] cards = deck.toArray();
+        assertEquals(deck.size(), cards.length);
+        assertEquals(deck.size() == 0, deck.isEmpty());
+        boolean[] inDeck = new boolean[12];
+        for (int card : cards) {
+            assertFalse(inDeck[card], "card " + card + " is in the deck twice");
+            inDeck[card] = true;
+        }
+        for (int card = 0; card < inDeck.length; ++card)
+            assertEquals(inDeck[card], deck.contains(card));
+    }
+
+    @BeforeEach
+    void setUp() {
+        deck = new Deck(12);
+        assertInvariants();
+    }
+
+    @Test
+    void newDeck_HasAllTheCards() {
+        int[] cards = deck.toArray();
+        Arrays.sort(cards);
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, cards);
+    }
+
+    @Test
+    void draw_EveryCardOnce() {
+        boolean[] drawn = new boolean[12];
+        for (int i = 0; i < 12; ++i) {
+            int card = deck.draw();
+            assertFalse(drawn[card]);
+            drawn[card] = true;
+            assertEquals(11 - i, deck.size());
+            assertInvariants();
+        }
+        assertTrue(deck.isEmpty());
+    }
+
+    @Test
+    void draw_EmptyDeckThrows() {
+        for (int card = 0; card < 12; ++card)
+            deck.remove(card);
+        assertThrows(IllegalArgumentException.class, () -> deck.draw());
+        assertInvariants();
+    }
+
+    @Test
+    void remove_AnyCardIncludingTheLast() {
+        assertTrue(deck.remove(11)); // the last entry of the array
+        assertTrue(deck.remove(0));
+        assertFalse(deck.remove(0));
+        assertEquals(10, deck.size());
+        assertInvariants();
+
+        while (!deck.isEmpty())
+            assertTrue(deck.remove(deck.toArray()[deck.size() - 1]));
+        assertInvariants();
+    }
+
+    @Test
+    void add_ReturnsCardsOnce() {
+        int card = deck.draw();
+        deck.add(card);
+        deck.add(card);
+        assertEquals(12, deck.size());
+        assertTrue(deck.contains(card));
+        assertInvariants();
+    }
+}
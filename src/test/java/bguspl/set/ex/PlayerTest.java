@@ -11,11 +11,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -23,6 +32,7 @@ import static org.mockito.Mockito.when;
 class PlayerTest {
 
     Player player;
+    Env env;
     @Mock
     Util util;
     @Mock
@@ -42,9 +52,8 @@ class PlayerTest {
     @BeforeEach
     void setUp() {
         // purposely do not find the configuration files (use defaults here).
-        Env env = new Env(logger, new Config(logger, (String) null), ui, util);
+        env = new Env(logger, new Config(logger, (String) null), ui, util);
         player = new Player(env, dealer, table, 0, false);
-        player.tokensOnTable[0][0]=2;
         assertInvariants();
     }
 
@@ -80,13 +89,74 @@ class PlayerTest {
 
 
     @Test
-    void removeAllTokens(){
-        // calculate the expected tokens for later
-        int expectedCounter=0;
+    void tokenAction_PlacesTokenOnTheCardRead(){
+        // slot 2 holds card 5 at version 1, and the player has no tokens yet
+        when(table.readSlot(2)).thenReturn(1L << 32 | 5);
+        when(table.placeToken(player.id, 2, 1)).thenReturn(true);
 
-        player.removeAllTokens();
+        player.tokenAction(2);
 
-        assertEquals(expectedCounter, player.tokensCounter);
-        assertEquals(player.tokensOnTable[0][0],-1);
+        verify(table).placeToken(player.id, 2, 1);
+        verify(dealer, never()).addSet(any());
+    }
+
+    @Test
+    void tokenAction_SecondPressRemovesToken(){
+        when(table.removeToken(player.id, 2)).thenReturn(true);
+
+        player.tokenAction(2);
+
+        verify(table, never()).placeToken(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void start_PlayerRunAsTasksHandlesPressesWithoutAThread() throws InterruptedException {
+        // a human player whose steps run on the thread that wakes it up
+        Player human = new Player(env, dealer, table, 1, true, Runnable::run);
+        when(table.hasCard(2)).thenReturn(true);
+        when(table.readSlot(2)).thenReturn(1L << 32 | 5);
+
+        human.start();
+        human.keyPressed(2);
+        verify(table).placeToken(human.id, 2, 1);
+
+        human.terminate();
+        human.join();
+        assertNull(human.getThread());
+    }
+
+    @Test
+    void run_IdlePlayerUsesNoCpu() throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadCpuTimeSupported());
+
+        // a computer player that is not available, and a human player that has no key presses
+        Player computer = new Player(env, dealer, table, 1, false);
+        Player human = new Player(env, dealer, table, 2, true);
+        computer.setAvailability(false);
+        computer.setThread();
+        human.setThread();
+        computer.getThread().start();
+        human.getThread().start();
+        Thread.sleep(200);
+        long[] idleThreads = {computer.getThread().getId(), computer.getAiThread().getId(), human.getThread().getId()};
+        long cpuBefore = 0;
+        for (long thread : idleThreads)
+            cpuBefore += threads.getThreadCpuTime(thread);
+
+        Thread.sleep(500);
+        long cpu = -cpuBefore;
+        for (long thread : idleThreads)
+            cpu += threads.getThreadCpuTime(thread);
+
+        computer.terminate();
+        human.terminate();
+        computer.getThread().join(1000);
+        human.getThread().join(1000);
+
+        // less than 5% of a core for the three threads together
+        assertTrue(cpu < TimeUnit.MILLISECONDS.toNanos(25), "idle threads used " + cpu / 1000 + " us of CPU");
+        assertFalse(computer.getThread().isAlive());
+        assertFalse(human.getThread().isAlive());
     }
 }
\ No newline at end of file
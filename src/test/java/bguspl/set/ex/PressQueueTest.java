@@ -0,0 +1,69 @@
+package bguspl.set.ex;
+
+import bguspl.set.WaitStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PressQueueTest {
+
+    @Test
+    void offer_DropsPressesWhenFullAndWrapsAround() {
+        PressQueue queue = new PressQueue(3, WaitStrategy.BLOCK);
+        for (int round = 0; round < 5; ++round) { // every round wraps the ring at a different index
+            assertTrue(queue.offer(round));
+            assertTrue(queue.offer(round + 1));
+            assertTrue(queue.offer(round + 2));
+            assertFalse(queue.offer(99));
+            assertEquals(3, queue.size());
+
+            assertEquals(round, queue.poll());
+            assertEquals(round + 1, queue.poll());
+            assertTrue(queue.offer(round + 3));
+            assertEquals(round + 2, queue.poll());
+            assertEquals(round + 3, queue.poll());
+            assertEquals(-1, queue.poll());
+        }
+        assertEquals(5, queue.dropped());
+    }
+
+    @Test
+    void close_WakesABlockedTake() throws InterruptedException {
+        PressQueue queue = new PressQueue(3, WaitStrategy.BLOCK);
+        AtomicInteger taken = new AtomicInteger(0);
+        Thread consumer = new Thread(() -> taken.set(queue.take()));
+        consumer.start();
+        while (consumer.getState() != Thread.State.WAITING)
+            Thread.sleep(1);
+
+        queue.close();
+        consumer.join(1000);
+        assertFalse(consumer.isAlive());
+        assertEquals(-1, taken.get());
+        assertFalse(queue.offer(1));
+        assertFalse(queue.awaitSpace());
+    }
+
+    @Test
+    void take_EveryWaitStrategyGetsThePressesInOrder() throws InterruptedException {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            PressQueue queue = new PressQueue(3, strategy);
+            int presses = 10000;
+            Thread producer = new Thread(() -> {
+                for (int press = 0; press < presses; ++press)
+                    if (!queue.awaitSpace() || !queue.offer(press % 12))
+                        return;
+            });
+            producer.start();
+            for (int press = 0; press < presses; ++press)
+                assertEquals(press % 12, queue.take(), strategy + " press " + press);
+            producer.join(1000);
+            assertFalse(producer.isAlive());
+            assertEquals(0, queue.dropped(), strategy.toString());
+        }
+    }
+}
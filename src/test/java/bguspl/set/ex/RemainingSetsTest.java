@@ -0,0 +1,67 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class RemainingSetsTest {
+
+    Env env;
+    RemainingSets remainingSets;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "3");
+        properties.put("FeatureCount", "4");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, mock(UserInterface.class), new UtilImpl(config));
+        remainingSets = new RemainingSets(env);
+    }
+
+    @Test
+    void count_FullDeck() {
+        assertEquals(1080, remainingSets.count()); // 81 * 80 / 6 sets in the full deck
+        assertFalse(remainingSets.isEmpty());
+    }
+
+    @Test
+    void remove_SameAsRecount() {
+        List<Integer> inPlay = new ArrayList<>();
+        for (int card = 0; card < env.config.deckSize; ++card)
+            inPlay.add(card);
+        Collections.shuffle(inPlay, new Random(7));
+        remainingSets.count();
+
+        while (!inPlay.isEmpty()) {
+            int card = inPlay.remove(inPlay.size() - 1);
+            remainingSets.remove(card);
+            remainingSets.remove(card); // a card that is no longer in play changes nothing
+            int[] cards = inPlay.stream().mapToInt(Integer::intValue).toArray();
+            assertEquals(env.util.countSets(cards, Integer.MAX_VALUE), remainingSets.count());
+        }
+        assertTrue(remainingSets.isEmpty());
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
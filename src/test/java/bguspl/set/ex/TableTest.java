@@ -2,23 +2,35 @@ package bguspl.set.ex;
 
 import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.GameClock;
+import bguspl.set.SetConsumer;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    Env env;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -33,34 +45,35 @@ class TableTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.EMPTY);
+        Arrays.fill(cardToSlot, Table.EMPTY);
 
-        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
+        env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
     private int fillSomeSlots() {
-        slotToCard[1] = 3;
-        slotToCard[2] = 5;
-        cardToSlot[3] = 1;
-        cardToSlot[5] = 2;
+        table.placeCard(3, 1);
+        table.placeCard(5, 2);
 
         return 2;
     }
 
     private void fillAllSlots() {
         for (int i = 0; i < slotToCard.length; ++i) {
-            slotToCard[i] = i;
-            cardToSlot[i] = i;
+            table.placeCard(i, i);
         }
     }
 
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
+        assertEquals(8, table.cardAt(2));
+        assertEquals(2, table.slotOf(8));
     }
 
     @Test
@@ -107,8 +120,236 @@ class TableTest {
     void removeCard(){
         fillSomeSlots();
         table.removeCard(1);
-        assertTrue(slotToCard[1]!=null);
-        
+        assertEquals(Table.EMPTY, slotToCard[1]);
+        assertEquals(Table.EMPTY, cardToSlot[3]);
+        assertEquals(1, table.countCards());
+    }
+
+    @Test
+    void placeCards_FillsAllGivenSlots() {
+        table.placeCards(new int[]{8, 3, 5}, new int[]{2, 0, 3});
+
+        assertEquals(3, table.countCards());
+        assertEquals(8, slotToCard[2]);
+        assertEquals(0, cardToSlot[3]);
+        assertEquals(3, cardToSlot[5]);
+    }
+
+    @Test
+    void hasSet_FollowsPlacedAndRemovedCards() {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TableDelaySeconds", "0");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new MockUserInterface(), new UtilImpl(config));
+        Table table = new Table(env);
+
+        table.placeCard(0, 0);
+        table.placeCard(1, 1);
+        table.placeCard(4, 3);
+        assertFalse(table.hasSet());
+
+        table.placeCard(2, 2); // cards 0, 1 and 2 differ only in the last feature
+        assertTrue(table.hasSet());
+        assertEquals(1, table.countSets());
+
+        table.removeCard(1);
+        assertFalse(table.hasSet());
+        assertEquals(0, table.countSets());
+    }
+
+    @Test
+    void tokens_TrackedPerPlayerAndPerSlot() {
+        table.placeToken(0, 1);
+        table.placeToken(0, 3);
+        table.placeToken(1, 3);
+
+        assertArrayEquals(new int[]{1, 3}, table.slotsOf(0));
+        assertArrayEquals(new int[]{3}, table.slotsOf(1));
+        assertEquals(2, table.countTokens(0));
+
+        assertTrue(table.removeToken(0, 3));
+        assertFalse(table.removeToken(0, 3));
+        assertEquals(1, table.countTokens(0));
+
+        table.removeAllTokens();
+        assertEquals(0, table.countTokens(0));
+        assertEquals(0, table.slotsOf(1).length);
+    }
+
+    @Test
+    void tokens_ClearedWithTheCardAndRejectedOnAChangedSlot() {
+        table.placeCard(8, 2);
+        int version = table.slotVersion(2);
+        assertTrue(table.placeToken(0, 2, version));
+        assertTrue(table.placeToken(1, 2, version));
+
+        table.removeCard(2);
+        assertEquals(0, table.countTokens(0));
+        assertEquals(0, table.countTokens(1));
+
+        table.placeCard(3, 2);
+        assertFalse(table.placeToken(0, 2, version));
+        assertEquals(0, table.slotsOf(0).length);
+    }
+
+    @Test
+    void slotVersions_ChangeWithTheCards() {
+        int[] slots = {0, 1, 2};
+        long before = table.versionSum(slots);
+        table.placeCards(new int[]{8, 3}, new int[]{0, 2});
+        assertEquals(1, table.slotVersion(0));
+        assertEquals(0, table.slotVersion(1));
+
+        table.removeCard(2);
+        assertEquals(2, table.slotVersion(2));
+        assertNotEquals(before, table.versionSum(slots));
+    }
+
+    @Test
+    void readSlot_NeverTornUnderContention() throws InterruptedException {
+        assertEquals(0, contend(2, 20000));
+    }
+
+    /**
+     * Benchmarks the slot reads against a dealer that keeps changing the slot (excluded from the default test run,
+     * run it with mvn test -Dgroups=benchmark -DexcludedGroups=).
+     */
+    @Test
+    @Tag("benchmark")
+    void readSlot_ContentionBenchmark() throws InterruptedException {
+        int readers = 4, readsPerReader = 200000;
+        long start = System.nanoTime();
+        assertEquals(0, contend(readers, readsPerReader));
+        System.out.printf("table contention: %d writes and %d reads by %d readers in %.1f ms%n",
+                table.slotVersion(0), (long) readers * readsPerReader, readers, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Reads slot 0 from several threads while this thread keeps placing cards in it and removing them.
+     *
+     * @return - the number of reads that paired a card with the version of another card.
+     */
+    private long contend(int readers, int readsPerReader) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(readers);
+        AtomicLong torn = new AtomicLong();
+        for (int r = 0; r < readers; ++r) {
+            new Thread(() -> {
+                for (int i = 0; i < readsPerReader; ++i) {
+                    long read = table.readSlot(0);
+                    int version = Table.versionOf(read);
+                    // the dealer places card i with the version 2i + 1, and removes it with the version 2i + 2
+                    int expected = version % 2 == 1 ? (version - 1) / 2 % cardToSlot.length : Table.EMPTY;
+                    if (Table.cardOf(read) != expected)
+                        torn.incrementAndGet();
+                }
+                done.countDown();
+            }).start();
+        }
+
+        int writes = 0;
+        for (; done.getCount() > 0; ++writes) {
+            table.placeCard(writes % cardToSlot.length, 0);
+            table.removeCard(0);
+        }
+        assertEquals(2 * writes, table.slotVersion(0));
+        return torn.get();
+    }
+
+    @Test
+    void listeners_ReceiveTheChangesInOrder() throws InterruptedException {
+        List<TableEvent> received = new CopyOnWriteArrayList<>();
+        table.addListener(received::addAll);
+
+        table.placeCards(new int[]{8, 3}, new int[]{2, 0});
+        table.placeToken(1, 2);
+        table.removeToken(1, 2);
+        table.removeCard(0);
+        table.placeToken(0, 2);
+        table.removeCard(2);
+        table.removeAllTokens();
+
+        List<TableEvent> expected = Arrays.asList(
+                new TableEvent(TableEvent.Type.LAYOUT, Table.EMPTY, 1),
+                new TableEvent(TableEvent.Type.CARD_PLACED, 2, 8),
+                new TableEvent(TableEvent.Type.CARD_PLACED, 0, 3),
+                new TableEvent(TableEvent.Type.TOKEN_PLACED, 2, 1),
+                new TableEvent(TableEvent.Type.TOKEN_REMOVED, 2, 1),
+                new TableEvent(TableEvent.Type.CARD_REMOVED, 0, 3),
+                new TableEvent(TableEvent.Type.TOKEN_PLACED, 2, 0),
+                new TableEvent(TableEvent.Type.CARD_REMOVED, 2, 8),
+                new TableEvent(TableEvent.Type.TOKENS_CLEARED, 2, Table.EMPTY),
+                new TableEvent(TableEvent.Type.TOKENS_CLEARED, Table.EMPTY, Table.EMPTY));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (received.size() < expected.size() && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals(expected, received);
+        assertEquals(1, table.layoutEpoch());
+    }
+
+    @Test
+    void listeners_DeliveredOnTheTableExecutor() {
+        AtomicLong dispatches = new AtomicLong();
+        Table table = new Table(env, slotToCard, cardToSlot, task -> {
+            dispatches.incrementAndGet();
+            task.run();
+        });
+        List<TableEvent> received = new CopyOnWriteArrayList<>();
+        table.addListener(received::addAll);
+
+        table.placeCard(8, 2);
+
+        assertEquals(Arrays.asList(new TableEvent(TableEvent.Type.CARD_PLACED, 2, 8)), received);
+        assertEquals(1, dispatches.get());
+    }
+
+    @Test
+    void placeCard_VirtualClockSkipsTableDelay() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "10");
+        MockLogger logger = new MockLogger();
+        Config config = new Config(logger, properties);
+        GameClock.Virtual clock = new GameClock.Virtual();
+        Env env = new Env(logger, config, new MockUserInterface(), new MockUtil(), clock);
+        Table table = new Table(env);
+
+        long start = System.currentTimeMillis();
+        table.placeCard(8, 2);
+        table.removeCard(2);
+
+        assertEquals(20000, clock.currentTimeMillis());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+    }
+
+    @Test
+    void virtualClock_MovesOnlyWhenAllTheGameThreadsWait() throws InterruptedException {
+        GameClock.Virtual clock = new GameClock.Virtual();
+        AtomicLong wokeAt = new AtomicLong(-1);
+        clock.register();
+        Thread penalized = new Thread(() -> {
+            clock.register();
+            try {
+                clock.sleep(900);
+                wokeAt.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {
+            } finally {
+                clock.unregister();
+            }
+        });
+        penalized.start();
+        while (penalized.getState() != Thread.State.WAITING)
+            Thread.sleep(1);
+
+        assertEquals(0, clock.currentTimeMillis()); // this thread is still running
+        clock.sleep(100);
+        assertEquals(100, clock.currentTimeMillis()); // the earlier deadline ends first
+        clock.sleep(1000);
+        penalized.join();
+        assertEquals(900, wokeAt.get());
+        assertEquals(1100, clock.currentTimeMillis());
+        clock.unregister();
     }
 
     static class MockUserInterface implements UserInterface {
@@ -119,6 +360,10 @@ class TableTest {
         @Override
         public void removeCard(int slot) {}
         @Override
+        public void placeCards(int[] cards, int[] slots) {}
+        @Override
+        public void removeCards(int[] slots) {}
+        @Override
         public void setCountdown(long millies, boolean warn) {}
         @Override
         public void setElapsed(long millies) {}
@@ -159,6 +404,24 @@ class TableTest {
             return null;
         }
 
+        @Override
+        public void forEachSet(int[] cards, int count, SetConsumer consumer) {}
+
+        @Override
+        public int countSets(int[] cards, int count) {
+            return 0;
+        }
+
+        @Override
+        public boolean containsSet(int[] cards) {
+            return false;
+        }
+
+        @Override
+        public int countSetsContaining(int card, int[] cards) {
+            return 0;
+        }
+
         @Override
         public void spin() {}
     }